@@ -0,0 +1,162 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import atlantis.shared.Feature;
+import atlantis.shared.GameTile;
+import atlantis.shared.Location;
+import atlantis.shared.Logic;
+import atlantis.shared.MoveBuffer;
+import atlantis.shared.Orient;
+import atlantis.shared.Placement;
+import atlantis.shared.Terrain;
+
+/**
+ * Measures the throughput of the {@link Logic} hot paths on boards of various sizes: an opening
+ * board, a board the size of a full game, and a board many games in size.
+ *
+ * <p>Run via {@code java -jar benchmarks/target/benchmarks.jar}, which includes the GC profiler
+ * (reporting allocation rate and bytes allocated per operation) and accepts the standard JMH
+ * command line options.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogicBenchmark
+{
+    /** The number of tiles on the board. */
+    @Param({"10", "70", "5000"})
+    public int tiles;
+
+    public static void main (String[] args) throws Exception {
+        new Runner(new OptionsBuilder().parent(new CommandLineOptions(args)).
+                   include(LogicBenchmark.class.getSimpleName()).
+                   addProfiler(GCProfiler.class).build()).run();
+    }
+
+    @Setup public void setup () {
+        _board = new RandomBoard(tiles, SEED);
+
+        // the same board, journaled so that placements can be made and undone
+        _journaled = new RandomBoard(tiles, SEED).logic;
+        _journaled.setJournaling(true);
+
+        // choose a legal placement on the board for each terrain that can be placed
+        Random rand = new Random(SEED);
+        List<Placement> queries = Lists.newArrayList();
+        for (Terrain terrain : Terrain.values()) {
+            GameTile tile = new GameTile(terrain, false);
+            List<Location> locs = Lists.newArrayList(_board.logic.computeLegalPlays(tile));
+            if (locs.isEmpty()) continue;
+            Location loc = locs.get(rand.nextInt(locs.size()));
+            List<Orient> orients = _board.logic.computeLegalOrients(tile, loc);
+            queries.add(new Placement(tile, orients.get(rand.nextInt(orients.size())), loc));
+        }
+        _queries = queries.toArray(new Placement[queries.size()]);
+    }
+
+    @Benchmark public void addPlacement () {
+        // place a tile and then undo the placement so that the board remains the same size
+        _journaled.addPlacement(nextQuery());
+        _journaled.undo();
+    }
+
+    @Benchmark public Set<Location> computeLegalPlays () {
+        // the legal plays are cached per terrain, so change the board (and change it back) to
+        // force them to be brought up to date, as they are after every play of a game; this
+        // includes the cost of the addPlacement benchmark
+        Placement query = changeBoard();
+        return _journaled.computeLegalPlays(query.tile);
+    }
+
+    @Benchmark public List<Orient> computeLegalOrients () {
+        Placement query = changeBoard();
+        return _journaled.computeLegalOrients(query.tile, query.loc);
+    }
+
+    @Benchmark public Set<Location> computeLegalPlaysCached () {
+        // the board never changes, so after warmup every query is answered from the cache
+        return _board.logic.computeLegalPlays(nextQuery().tile);
+    }
+
+    @Benchmark public List<Orient> computeLegalOrientsCached () {
+        Placement query = nextQuery();
+        return _board.logic.computeLegalOrients(query.tile, query.loc);
+    }
+
+    @Benchmark public int computeClaim () {
+        Placement query = nextQuery();
+        int claims = 0;
+        for (Feature f : query.tile.terrain.features) {
+            claims += _board.logic.computeClaim(query.tile, query.orient, query.loc, f);
+        }
+        return claims;
+    }
+
+    @Benchmark public int computeMoves () {
+        return _board.logic.computeMoves(nextQuery().tile, 0, _moves);
+    }
+
+    @Benchmark public List<Logic.FeatureScore> computeScores () {
+        return _board.logic.computeScores(_board.lastPlay());
+    }
+
+    @Benchmark public List<Logic.FeatureScore> computeFinalScores () {
+        return _board.logic.computeFinalScores();
+    }
+
+    @Benchmark public List<Logic.FeatureScore> computeFarmScores () {
+        return _board.logic.computeFarmScores();
+    }
+
+    /** Places the next query's tile on the journaled board and undoes the placement, which
+     * leaves the board as it was but invalidates any legal plays cached for it. */
+    protected Placement changeBoard () {
+        Placement query = nextQuery();
+        _journaled.addPlacement(query);
+        _journaled.undo();
+        return query;
+    }
+
+    protected Placement nextQuery () {
+        Placement query = _queries[_queryIdx];
+        _queryIdx = (_queryIdx + 1) % _queries.length;
+        return query;
+    }
+
+    protected RandomBoard _board;
+    protected Logic _journaled;
+    protected Placement[] _queries;
+    protected int _queryIdx;
+    protected final MoveBuffer _moves = new MoveBuffer();
+
+    protected static final long SEED = 42L;
+}
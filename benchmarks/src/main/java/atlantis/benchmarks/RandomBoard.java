@@ -0,0 +1,99 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.Lists;
+
+import atlantis.shared.Feature;
+import atlantis.shared.GameTile;
+import atlantis.shared.Location;
+import atlantis.shared.Logic;
+import atlantis.shared.Orient;
+import atlantis.shared.Piecen;
+import atlantis.shared.Placement;
+import atlantis.shared.Rules;
+
+/**
+ * A board of a given size, built by playing out random legal moves from a seeded shuffle of as
+ * many standard tile sets as are needed. Piecens are placed and reclaimed as in a real game.
+ */
+public class RandomBoard
+{
+    /** The number of players whose piecens are placed on the board. */
+    public static final int PLAYERS = 4;
+
+    /** The logic that tracks the board. */
+    public final Logic logic = new Logic();
+
+    /** The placements on the board, in the order they were made. */
+    public final List<Placement> plays = Lists.newArrayList();
+
+    /** The piecens currently on the board. */
+    public final List<Piecen> piecens = Lists.newArrayList();
+
+    public RandomBoard (int tiles, long seed) {
+        Random rand = new Random(seed);
+        List<GameTile> bag = Lists.newArrayList();
+        while (bag.size() < tiles) bag.addAll(Rules.standardTiles());
+        Collections.shuffle(bag, rand);
+
+        place(new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0)), null);
+        int[] inPlay = new int[PLAYERS];
+        for (int ii = 0; ii < bag.size() && plays.size() < tiles; ii++) {
+            GameTile tile = bag.get(ii);
+            List<Location> locs = Lists.newArrayList(logic.computeLegalPlays(tile));
+            if (locs.isEmpty()) continue;
+            Location loc = locs.get(rand.nextInt(locs.size()));
+            List<Orient> orients = logic.computeLegalOrients(tile, loc);
+            Placement play = new Placement(tile, orients.get(rand.nextInt(orients.size())), loc);
+
+            int pidx = plays.size() % PLAYERS;
+            Piecen piecen = null;
+            if (inPlay[pidx] < Rules.STARTING_PIECENS && rand.nextBoolean()) {
+                List<Integer> unclaimed = Lists.newArrayList();
+                Feature[] features = tile.terrain.features;
+                for (int fidx = 0; fidx < features.length; fidx++) {
+                    if (logic.computeClaim(tile, play.orient, loc, features[fidx]) == 0) {
+                        unclaimed.add(fidx);
+                    }
+                }
+                if (!unclaimed.isEmpty()) {
+                    piecen = new Piecen(pidx, loc, unclaimed.get(rand.nextInt(unclaimed.size())));
+                    inPlay[pidx]++;
+                }
+            }
+
+            // reclaim the piecens from any features completed by this play
+            for (Logic.FeatureScore score : place(play, piecen)) {
+                if (!score.complete) continue;
+                for (Piecen p : score.piecens) {
+                    if (piecens.remove(p)) {
+                        logic.clearPiecen(p);
+                        inPlay[p.ownerIdx]--;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns the most recent placement. */
+    public Placement lastPlay () {
+        return plays.get(plays.size()-1);
+    }
+
+    protected List<Logic.FeatureScore> place (Placement play, Piecen piecen) {
+        plays.add(play);
+        logic.addPlacement(play);
+        if (piecen != null) {
+            piecens.add(piecen);
+            logic.addPiecen(piecen);
+        }
+        return logic.computeScores(play);
+    }
+}
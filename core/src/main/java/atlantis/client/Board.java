@@ -5,10 +5,8 @@
 package atlantis.client;
 
 import java.util.List;
-import java.util.Map;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 
 import playn.core.GroupLayer;
 import playn.core.ImageLayer;
@@ -27,10 +25,12 @@ import react.Slot;
 import tripleplay.util.PointerInput;
 
 import atlantis.client.util.TextGlyph;
+import atlantis.shared.BoardMap;
 import atlantis.shared.Feature;
 import atlantis.shared.GameObject;
 import atlantis.shared.GameTile;
 import atlantis.shared.Location;
+import atlantis.shared.MoveBuffer;
 import atlantis.shared.Orient;
 import atlantis.shared.Piecen;
 import atlantis.shared.Placement;
@@ -273,9 +273,16 @@ public class Board
             // if the current turn holder is controlled by this client, compute the legal
             // placements for this tile and display targets for all legal moves (the server will
             // have ensured that the tile has at least one legal play)
-            if (_screen.localIdxs.contains(_gobj.turnHolder.get())) {
+            int turnHolder = _gobj.turnHolder.get();
+            if (_screen.localIdxs.contains(turnHolder)) {
+                // the legal moves also determine the orientations and piecen spots we offer
+                _screen.ctrl.logic.computeMoves(placing, _gobj.piecensInPlay(turnHolder), _moves);
                 Rectangle tbounds = new Rectangle(Media.TERRAIN_SIZE);
-                for (Location ploc : _screen.ctrl.logic.computeLegalPlays(placing)) {
+                Location ploc = null;
+                for (int ii = 0, ll = _moves.size(); ii < ll; ii++) {
+                    // moves are generated location by location, so skip repeats of the last
+                    if (ploc != null && ploc.x == _moves.x(ii) && ploc.y == _moves.y(ii)) continue;
+                    ploc = new Location(_moves.x(ii), _moves.y(ii));
                     final Glyphs.Target target = new Glyphs.Target(
                         _screen.anim, Atlantis.media.getTargetTile(), ploc);
                     target.layer.setDepth(-1); // targets render below tiles
@@ -415,8 +422,14 @@ public class Board
             _ctrls.layer.setVisible(false);
             _ctrls.setLocation(_active.loc, false, null);
 
-            // compute the valid orientations for the placing tile at this location
-            _orients = _screen.ctrl.logic.computeLegalOrients(_placing, _active.loc);
+            // note the valid orientations for the placing tile at this location
+            _orients.clear();
+            for (int ii = 0, ll = _moves.size(); ii < ll; ii++) {
+                if (_moves.featureIdx(ii) < 0 && _moves.x(ii) == _active.loc.x &&
+                    _moves.y(ii) == _active.loc.y) {
+                    _orients.add(_moves.orient(ii));
+                }
+            }
             // if whatever orient we happen to be at is not valid...
             if (!_orients.contains(_glyph.getOrient())) {
                 // ...start in the first orientation
@@ -457,12 +470,9 @@ public class Board
             _nopiecen.setVisible(true);
             _cancel.setVisible(true);
             // enable/disable piecens based on legal placements
-            int idx = 0;
-            for (Feature f : _placing.terrain.features) {
-                int claim = _screen.ctrl.logic.computeClaim(
-                    _placing, _glyph.getOrient(), _active.loc, f);
-                _piecens.get(idx).setVisible(claim == 0);
-                idx++;
+            for (int idx = 0, ll = _placing.terrain.features.length; idx < ll; idx++) {
+                boolean legal = _moves.indexOf(_active.loc, _glyph.getOrient(), idx) >= 0;
+                _piecens.get(idx).setVisible(legal);
             }
         }
 
@@ -478,7 +488,8 @@ public class Board
 
         protected GameTile _placing;
         protected Glyphs.Play _glyph;
-        protected List<Orient> _orients;
+        protected MoveBuffer _moves = new MoveBuffer();
+        protected List<Orient> _orients = Lists.newArrayList();
         protected List<Glyphs.Target> _targets = Lists.newArrayList();
         protected Glyphs.Target _active;
         protected Glyphs.Tile _ctrls;
@@ -491,5 +502,5 @@ public class Board
     protected Point _origin;
     protected Placer _placer;
     protected Point _savedTrans;
-    protected Map<Location, Glyphs.Play> _pglyphs = Maps.newHashMap();
+    protected BoardMap<Glyphs.Play> _pglyphs = new BoardMap<Glyphs.Play>();
 }
@@ -8,9 +8,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
+import com.threerings.nexus.distrib.DService;
+import com.threerings.nexus.distrib.DistribUtil;
+import com.threerings.nexus.distrib.EventSink;
+import com.threerings.nexus.distrib.NexusEvent;
+import com.threerings.nexus.distrib.NexusObject;
+
 import tripleplay.util.Logger;
 import tripleplay.util.Randoms;
 
@@ -31,6 +36,37 @@ public class AbstractGameManager implements GameService
         _logic.init(_gobj);
     }
 
+    /**
+     * Creates a game object for the specified players that is not distributed, but rather wired
+     * directly to this manager: events are applied immediately and service calls are dispatched
+     * directly to this manager. Initializes this manager with said object.
+     */
+    public GameObject initLoopback (String[] players) {
+        final AbstractGameManager mgr = this;
+        GameObject gobj = new GameObject(players, new DService<GameService>() {
+            @Override public Class<GameService> getServiceClass () {
+                return GameService.class;
+            }
+            @Override public GameService get () {
+                return mgr;
+            }
+        });
+        DistribUtil.init(gobj, 1, new EventSink() {
+            public String getHost () {
+                return "loopback";
+            }
+            public void postEvent (NexusObject source, NexusEvent event) {
+                event.applyTo(source);
+            }
+            public void postCall (NexusObject source, short attrIndex,
+                                  short methodId, Object[] args) {
+                DistribUtil.dispatchCall(source, attrIndex, methodId, args);
+            }
+        });
+        init(gobj);
+        return gobj;
+    }
+
     // from interface GameService
     public void playerReady (int playerIdx) {
         checkState(_gobj.state.get() == GameObject.State.PRE_GAME,
@@ -46,17 +82,8 @@ public class AbstractGameManager implements GameService
 
     // from interface GameService
     public void play (int playerIdx, Placement play, Piecen piecen) {
-        checkState(playerIdx == _gobj.turnHolder.get(), "Refusing play from non-turnholder",
-                   "thidx", _gobj.turnHolder.get(), "pidx", playerIdx);
-
-        // if the play includes a piecen, make sure the player has a piecen to play
-        if (piecen != null) {
-            checkState(_gobj.piecensInPlay(playerIdx) < Rules.STARTING_PIECENS,
-                       "Player with no piecens tried to place with piecen",
-                       "pidx", playerIdx, "play", play);
-        }
-
-        // TODO: validate that this is a legal play
+        validatePlay(playerIdx, play, piecen);
+        turnEnded(playerIdx);
 
         // add this play to the game state and our local logic
         _gobj.plays.add(play);
@@ -81,6 +108,48 @@ public class AbstractGameManager implements GameService
         }
     }
 
+    /**
+     * Checks that the supplied play is legal for the specified player: that they hold the turn,
+     * that the play is complete, that they are placing the tile they were given somewhere it
+     * fits, and that any piecen is theirs, is available to them and is placed on an unclaimed
+     * feature of the placed tile.
+     *
+     * @throws InvalidPlayException if the play is not legal.
+     */
+    protected void validatePlay (int playerIdx, Placement play, Piecen piecen) {
+        int turnHolder = _gobj.turnHolder.get();
+        checkPlay(playerIdx == turnHolder, InvalidPlayException.Reason.NOT_TURN_HOLDER,
+                  "Refusing play from non-turnholder", "thidx", turnHolder, "pidx", playerIdx);
+
+        checkPlay(play != null && play.tile != null && play.orient != null && play.loc != null,
+                  InvalidPlayException.Reason.MALFORMED_PLAY,
+                  "Refusing incomplete play", "pidx", playerIdx, "play", play);
+
+        GameTile placing = _gobj.placing.get();
+        checkPlay(play.tile.equals(placing), InvalidPlayException.Reason.WRONG_TILE,
+                  "Refusing play of tile other than placing", "pidx", playerIdx,
+                  "placing", placing, "play", play);
+        checkPlay(_logic.isLegalPlay(play.tile, play.orient, play.loc),
+                  InvalidPlayException.Reason.ILLEGAL_PLACEMENT,
+                  "Refusing illegal placement", "pidx", playerIdx, "play", play);
+        if (piecen == null) return;
+
+        // if the play includes a piecen, make sure the player has a piecen to play
+        checkPlay(_gobj.piecensInPlay(playerIdx) < Rules.STARTING_PIECENS,
+                  InvalidPlayException.Reason.NO_PIECENS,
+                  "Player with no piecens tried to place with piecen",
+                  "pidx", playerIdx, "play", play);
+        checkPlay(piecen.ownerIdx == playerIdx && play.loc.equals(piecen.loc) &&
+                  piecen.featureIdx >= 0 && piecen.featureIdx < play.tile.terrain.features.length,
+                  InvalidPlayException.Reason.MALFORMED_PIECEN,
+                  "Refusing piecen not on placed tile", "pidx", playerIdx, "play", play,
+                  "piecen", piecen);
+        checkPlay(_logic.isLegalMove(play.tile, play.orient, play.loc, piecen.featureIdx),
+                  InvalidPlayException.Reason.CLAIMED_FEATURE,
+                  "Refusing piecen on claimed feature", "pidx", playerIdx, "play", play,
+                  "piecen", piecen);
+    }
+
     protected AbstractGameManager (Randoms rands) {
         _rands = rands;
     }
@@ -109,14 +178,21 @@ public class AbstractGameManager implements GameService
     }
 
     protected void startTurn (int turnHolder) {
-        List<GameTile> skipped = Lists.newArrayList();
-        GameTile tile = _tileBag.remove(0);
-        while (_logic.computeLegalPlays(tile).isEmpty()) {
-            log.info("Skipping unplayable tile", "tile", tile);
-            skipped.add(tile);
-            tile = null;
-            if (_tileBag.isEmpty()) break;
-            tile = _tileBag.remove(0);
+        // draw from the end of the (shuffled) bag so that each draw is O(1); tiles that cannot be
+        // played are moved to the bottom of the bag (below any others skipped this turn) and the
+        // tiles they displace are moved to the top
+        GameTile tile = null;
+        int skipped = 0;
+        while (tile == null && skipped < _tileBag.size()) {
+            GameTile drawn = _tileBag.remove(_tileBag.size() - 1);
+            if (_logic.hasLegalPlay(drawn)) {
+                tile = drawn;
+            } else {
+                log.info("Skipping unplayable tile", "tile", drawn);
+                if (skipped < _tileBag.size()) drawn = _tileBag.set(skipped, drawn);
+                _tileBag.add(drawn);
+                skipped++;
+            }
         }
 
         if (tile == null) {
@@ -126,13 +202,28 @@ public class AbstractGameManager implements GameService
             endGame();
 
         } else {
-            _tileBag.addAll(skipped); // throw the skipped tiles back in the bag
             _gobj.placing.update(tile);
             _gobj.tilesRemaining.update(_tileBag.size());
             _gobj.turnHolder.update(turnHolder);
+            turnStarted(turnHolder, tile);
         }
     }
 
+    /**
+     * Called when a turn has started, after the game object has been updated to reflect the new
+     * turn holder and the tile they must place.
+     */
+    protected void turnStarted (int turnHolder, GameTile tile) {
+        // nothing by default
+    }
+
+    /**
+     * Called when the turn holder has made a valid play, before it is applied to the game.
+     */
+    protected void turnEnded (int turnHolder) {
+        // nothing by default
+    }
+
     protected void endGame () {
         // indicate that there is no next turn
         _gobj.placing.update(null);
@@ -164,6 +255,7 @@ public class AbstractGameManager implements GameService
         // reclaim the piecens from the completed feature
         for (Piecen p : score.piecens) {
             _gobj.piecens.remove(p);
+            _logic.clearPiecen(p);
             // maybe send an event reporting this piecen as a scorer
             if (toReport.remove(p.ownerIdx)) {
                 _gobj.scoreSignal.emit(new GameObject.Score(score.score, p));
@@ -177,6 +269,13 @@ public class AbstractGameManager implements GameService
         }
     }
 
+    protected static void checkPlay (boolean condition, InvalidPlayException.Reason reason,
+                                     String message, Object... args) {
+        if (!condition) {
+            throw new InvalidPlayException(reason, message, args);
+        }
+    }
+
     protected final Randoms _rands;
 
     protected GameObject _gobj;
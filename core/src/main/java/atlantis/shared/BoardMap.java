@@ -0,0 +1,252 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.shared;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Maps board coordinates to values. Coordinates are packed into a single int key, and entries
+ * are stored in an open-addressed (linear probing) table, so lookups neither allocate nor box,
+ * and neighbors can be looked up without creating {@link Location} instances. Null values are
+ * not supported; storing null is equivalent to removing the mapping.
+ *
+ * <p>Keys are ints rather than longs because this class is compiled by GWT for the HTML client,
+ * where longs are emulated and far slower. Each coordinate thus occupies 16 bits, which is ample:
+ * a board of every tile in the game spans fewer than a hundred cells in each direction.</p>
+ *
+ * <p>Entries can be visited without allocation via slot iteration:</p>
+ * <pre>{@code
+ * for (int slot = map.firstSlot(); slot >= 0; slot = map.nextSlot(slot)) {
+ *     use(map.slotX(slot), map.slotY(slot), map.slotValue(slot));
+ * }
+ * }</pre>
+ * The map must not be modified during iteration.
+ */
+public class BoardMap<V>
+{
+    /** Packs the supplied coordinates into a single key. */
+    public static int key (int x, int y) {
+        return (x << 16) | (y & 0xFFFF);
+    }
+
+    /** Extracts the x coordinate from the supplied key. */
+    public static int keyX (int key) {
+        return key >> 16;
+    }
+
+    /** Extracts the y coordinate from the supplied key. */
+    public static int keyY (int key) {
+        return (short)key;
+    }
+
+    /** Returns the number of mappings in this map. */
+    public int size () {
+        return _size;
+    }
+
+    /** Returns true if this map contains no mappings. */
+    public boolean isEmpty () {
+        return _size == 0;
+    }
+
+    /** Returns the value mapped to the specified coordinates, or null. */
+    public V get (int x, int y) {
+        int slot = findSlot(key(x, y));
+        return (slot < 0) ? null : _values[slot];
+    }
+
+    /** Returns the value mapped to the specified location, or null. */
+    public V get (Location loc) {
+        return get(loc.x, loc.y);
+    }
+
+    /** Returns the value mapped to the specified location's neighbor in the specified direction,
+     * or null. */
+    public V get (Location loc, Orient dir) {
+        return get(loc.x + dir.dx, loc.y + dir.dy);
+    }
+
+    /** Returns true if a value is mapped to the specified coordinates. */
+    public boolean containsKey (int x, int y) {
+        return findSlot(key(x, y)) >= 0;
+    }
+
+    /** Returns true if a value is mapped to the specified location. */
+    public boolean containsKey (Location loc) {
+        return containsKey(loc.x, loc.y);
+    }
+
+    /**
+     * Maps the specified coordinates to the supplied value.
+     * @return the value previously mapped to the coordinates, or null.
+     */
+    public V put (int x, int y, V value) {
+        if (value == null) return remove(x, y);
+        int key = key(x, y);
+        int mask = _keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            V ovalue = _values[slot];
+            if (ovalue == null) {
+                _keys[slot] = key;
+                _values[slot] = value;
+                if (++_size > _keys.length * MAX_LOAD) resize(_keys.length * 2);
+                return null;
+            }
+            if (_keys[slot] == key) {
+                _values[slot] = value;
+                return ovalue;
+            }
+        }
+    }
+
+    /**
+     * Maps the specified location to the supplied value.
+     * @return the value previously mapped to the location, or null.
+     */
+    public V put (Location loc, V value) {
+        return put(loc.x, loc.y, value);
+    }
+
+    /**
+     * Removes the mapping for the specified coordinates.
+     * @return the value that was mapped to the coordinates, or null.
+     */
+    public V remove (int x, int y) {
+        int slot = findSlot(key(x, y));
+        if (slot < 0) return null;
+        V ovalue = _values[slot];
+
+        // shift back any subsequent entries in this probe sequence that can fill the hole
+        int mask = _keys.length - 1, hole = slot;
+        for (int next = (slot + 1) & mask; _values[next] != null; next = (next + 1) & mask) {
+            int ideal = hash(_keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                _keys[hole] = _keys[next];
+                _values[hole] = _values[next];
+                hole = next;
+            }
+        }
+        _values[hole] = null;
+        _size--;
+        return ovalue;
+    }
+
+    /**
+     * Removes the mapping for the specified location.
+     * @return the value that was mapped to the location, or null.
+     */
+    public V remove (Location loc) {
+        return remove(loc.x, loc.y);
+    }
+
+    /** Removes all mappings from this map. */
+    public void clear () {
+        for (int ii = 0; ii < _values.length; ii++) _values[ii] = null;
+        _size = 0;
+    }
+
+    /** Returns the first occupied slot, or -1 if the map is empty. */
+    public int firstSlot () {
+        return nextSlot(-1);
+    }
+
+    /** Returns the next occupied slot after the supplied slot, or -1 if there are no more. */
+    public int nextSlot (int slot) {
+        for (int ii = slot + 1; ii < _values.length; ii++) {
+            if (_values[ii] != null) return ii;
+        }
+        return -1;
+    }
+
+    /** Returns the x coordinate of the entry in the supplied (occupied) slot. */
+    public int slotX (int slot) {
+        return keyX(_keys[slot]);
+    }
+
+    /** Returns the y coordinate of the entry in the supplied (occupied) slot. */
+    public int slotY (int slot) {
+        return keyY(_keys[slot]);
+    }
+
+    /** Returns the value of the entry in the supplied (occupied) slot. */
+    public V slotValue (int slot) {
+        return _values[slot];
+    }
+
+    /** Returns an iterable over the values in this map. */
+    public Iterable<V> values () {
+        return new Iterable<V>() {
+            public Iterator<V> iterator () {
+                return new Iterator<V>() {
+                    public boolean hasNext () {
+                        return _next >= 0;
+                    }
+                    public V next () {
+                        if (_next < 0) throw new NoSuchElementException();
+                        V value = _values[_next];
+                        _next = nextSlot(_next);
+                        return value;
+                    }
+                    public void remove () {
+                        throw new UnsupportedOperationException();
+                    }
+                    protected int _next = firstSlot();
+                };
+            }
+        };
+    }
+
+    protected int findSlot (int key) {
+        int mask = _keys.length - 1;
+        for (int slot = hash(key) & mask; _values[slot] != null; slot = (slot + 1) & mask) {
+            if (_keys[slot] == key) return slot;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void resize (int capacity) {
+        int[] okeys = _keys;
+        V[] ovalues = _values;
+        _keys = new int[capacity];
+        _values = (V[])new Object[capacity];
+        int mask = capacity - 1;
+        for (int ii = 0; ii < okeys.length; ii++) {
+            if (ovalues[ii] == null) continue;
+            int slot = hash(okeys[ii]) & mask;
+            while (_values[slot] != null) slot = (slot + 1) & mask;
+            _keys[slot] = okeys[ii];
+            _values[slot] = ovalues[ii];
+        }
+    }
+
+    /** Mixes the bits of the supplied key (the 32-bit MurmurHash3 finalizer). Neighboring and
+     * symmetric coordinates are thus spread evenly across the table. */
+    protected static int hash (int key) {
+        key ^= key >>> 16;
+        key *= 0x85ebca6b;
+        key ^= key >>> 13;
+        key *= 0xc2b2ae35;
+        key ^= key >>> 16;
+        return key;
+    }
+
+    /** The number of mappings in this map. */
+    protected int _size;
+
+    /** The packed coordinates of each entry. */
+    protected int[] _keys = new int[INITIAL_CAPACITY];
+
+    /** The value of each entry; null marks an empty slot. */
+    @SuppressWarnings("unchecked")
+    protected V[] _values = (V[])new Object[INITIAL_CAPACITY];
+
+    /** The initial capacity of the table (must be a power of two). */
+    protected static final int INITIAL_CAPACITY = 64;
+
+    /** The maximum fraction of the table that is occupied before it is grown. */
+    protected static final float MAX_LOAD = 0.5f;
+}
@@ -0,0 +1,485 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.shared;
+
+import playn.core.Asserts;
+
+/**
+ * Tracks the groups of connected features on the board, and the claim group assigned to each of
+ * them, using a disjoint-set forest (union-find with union by rank and path compression).
+ *
+ * <p>Every feature of every placed tile is a node. A tile's nodes are allocated contiguously when
+ * it is placed, so a feature is identified by its tile's base node plus its index in the tile's
+ * feature array. Connected features are merged into a single set as tiles are placed, and the claim
+ * group of a set is stored on its root. Merging two groups and looking up the claim group of a
+ * feature are thus amortized near-constant time operations, regardless of the size of the
+ * group.</p>
+ *
+ * <p>Each group also tracks the counters needed to score it without walking it: the number of
+ * distinct tiles it spans, the number of those tiles that have a shield, and the number of its
+ * edges that do not yet abut a placed tile. A group with no open edges is complete. A cloister
+ * has no edges, so its open edge count is instead the number of empty cells surrounding it.</p>
+ *
+ * <p>Finally, each group tracks the piecens placed on its features: the nodes on which they are
+ * placed (as a list that is spliced together when groups merge) and the number placed by each
+ * player.</p>
+ *
+ * <p>Changes may be journaled (see {@link #setJournaling}) so that they can later be reverted via
+ * {@link #rollback}. Path compression is suspended while journaling, so that undoing a merge
+ * need only restore the handful of values the merge itself changed.</p>
+ */
+public class ClaimGroups
+{
+    /**
+     * Allocates nodes for the (unconnected and unclaimed) features of a newly placed tile.
+     * @return the index of the node for the tile's first feature.
+     */
+    public int addTile (GameTile tile) {
+        Feature[] features = tile.terrain.features;
+        int base = _size, count = features.length;
+        ensureCapacity(base + count);
+        for (int ii = 0; ii < count; ii++) {
+            int node = base + ii;
+            Feature f = features[ii];
+            _parent[node] = node;
+            _rank[node] = 0;
+            _claim[node] = 0;
+            _open[node] = (f.type == Feature.Type.CLOISTER) ? 8 : Integer.bitCount(f.edgeMask);
+            _tiles[node] = 1;
+            _shields[node] = _shield[node] = tile.hasShield ? 1 : 0;
+            _tile[node] = base;
+            _span[node] = count;
+
+            // nodes on tiles with more than one feature of the same type are tracked in a per-group
+            // list so that merged groups do not count the tile more than once
+            _mnext[node] = -1;
+            boolean multi = false;
+            for (Feature of : features) {
+                if (of != f && of.type == f.type) multi = true;
+            }
+            _mhead[node] = _mtail[node] = multi ? node : -1;
+            _mcount[node] = multi ? 1 : 0;
+
+            _powner[node] = -1;
+            _pnext[node] = _phead[node] = _ptail[node] = -1;
+            for (int pp = 0; pp < Rules.MAX_PLAYERS; pp++) _pcount[node*Rules.MAX_PLAYERS + pp] = 0;
+        }
+        set(SIZE, 0, _size + count);
+        return base;
+    }
+
+    /**
+     * Returns the number of nodes that have been allocated.
+     */
+    public int size () {
+        return _size;
+    }
+
+    /**
+     * Returns the root node of the group that contains the specified node.
+     */
+    public int find (int node) {
+        int root = node;
+        while (_parent[root] != root) root = _parent[root];
+        if (_journaling) return root;
+        // compress the path from the node to the root
+        while (_parent[node] != root) {
+            int next = _parent[node];
+            _parent[node] = root;
+            node = next;
+        }
+        return root;
+    }
+
+    /**
+     * Returns true if the two specified nodes are in the same group.
+     */
+    public boolean connected (int node1, int node2) {
+        return find(node1) == find(node2);
+    }
+
+    /**
+     * Merges the groups that contain the two specified nodes. If only one of the groups is
+     * claimed, the merged group inherits its claim. If both are claimed, the merged group inherits
+     * the claim of the group containing {@code node1}.
+     *
+     * @return the root node of the merged group.
+     */
+    public int union (int node1, int node2) {
+        int root1 = find(node1), root2 = find(node2);
+        if (root1 == root2) return root1;
+
+        // count the tiles that have features in both groups, so that they're only counted once
+        int small = (_mcount[root1] <= _mcount[root2]) ? root1 : root2;
+        int large = (small == root1) ? root2 : root1;
+        int shared = 0, sharedShields = 0;
+        for (int node = _mhead[small]; node >= 0; node = _mnext[node]) {
+            if (sharesTile(node, small, large)) {
+                shared++;
+                sharedShields += _shield[node];
+            }
+        }
+
+        int claim = (_claim[root1] != 0) ? _claim[root1] : _claim[root2];
+        int root, other;
+        if (_rank[root1] < _rank[root2]) {
+            root = root2;
+            other = root1;
+        } else {
+            root = root1;
+            other = root2;
+            if (_rank[root1] == _rank[root2]) set(RANK, root1, _rank[root1] + 1);
+        }
+        set(PARENT, other, root);
+        set(CLAIM, root, claim);
+        set(OPEN, root, _open[root1] + _open[root2]);
+        set(TILES, root, _tiles[root1] + _tiles[root2] - shared);
+        set(SHIELDS, root, _shields[root1] + _shields[root2] - sharedShields);
+
+        // append the small group's list of multi-feature tile nodes to the large group's list
+        if (_mhead[small] >= 0) {
+            if (_mhead[large] < 0) set(MHEAD, large, _mhead[small]);
+            else set(MNEXT, _mtail[large], _mhead[small]);
+            set(MTAIL, large, _mtail[small]);
+        }
+        set(MHEAD, root, _mhead[large]);
+        set(MTAIL, root, _mtail[large]);
+        set(MCOUNT, root, _mcount[root1] + _mcount[root2]);
+
+        // combine the groups' piecens
+        if (_phead[other] >= 0) {
+            if (_phead[root] < 0) set(PHEAD, root, _phead[other]);
+            else set(PNEXT, _ptail[root], _phead[other]);
+            set(PTAIL, root, _ptail[other]);
+        }
+        for (int pp = 0; pp < Rules.MAX_PLAYERS; pp++) {
+            int ocount = _pcount[other*Rules.MAX_PLAYERS + pp];
+            if (ocount != 0) {
+                int idx = root*Rules.MAX_PLAYERS + pp;
+                set(PCOUNT, idx, _pcount[idx] + ocount);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Notes that an open edge of the group containing the specified node now abuts a placed tile
+     * (or, for a cloister, that one of its surrounding cells has been filled).
+     */
+    public void closeEdge (int node) {
+        int root = find(node);
+        set(OPEN, root, _open[root] - 1);
+    }
+
+    /**
+     * Returns the number of open edges of the group that contains the specified node.
+     */
+    public int getOpenEdges (int node) {
+        return _open[find(node)];
+    }
+
+    /**
+     * Returns true if the group that contains the specified node has no open edges.
+     */
+    public boolean isComplete (int node) {
+        return getOpenEdges(node) == 0;
+    }
+
+    /**
+     * Returns the number of distinct tiles spanned by the group that contains the specified node.
+     */
+    public int getTileCount (int node) {
+        return _tiles[find(node)];
+    }
+
+    /**
+     * Returns the number of distinct tiles with a shield spanned by the group that contains the
+     * specified node.
+     */
+    public int getShieldCount (int node) {
+        return _shields[find(node)];
+    }
+
+    /**
+     * Returns the claim group of the group that contains the specified node, or zero if the group
+     * is unclaimed.
+     */
+    public int getClaimGroup (int node) {
+        return _claim[find(node)];
+    }
+
+    /**
+     * Assigns the specified claim group to the group that contains the specified node.
+     */
+    public void setClaimGroup (int node, int claimGroup) {
+        set(CLAIM, find(node), claimGroup);
+    }
+
+    /**
+     * Notes that the specified player placed a piecen on the specified node.
+     */
+    public void addPiecen (int node, int owner) {
+        Asserts.checkState(_powner[node] < 0, "Node already has a piecen %s", node);
+        int root = find(node), idx = root*Rules.MAX_PLAYERS + owner;
+        set(POWNER, node, owner);
+        set(PNEXT, node, -1);
+        if (_phead[root] < 0) set(PHEAD, root, node);
+        else set(PNEXT, _ptail[root], node);
+        set(PTAIL, root, node);
+        set(PCOUNT, idx, _pcount[idx] + 1);
+    }
+
+    /**
+     * Notes that the piecen on the specified node was removed.
+     */
+    public void removePiecen (int node) {
+        int owner = _powner[node];
+        if (owner < 0) return;
+        int root = find(node), idx = root*Rules.MAX_PLAYERS + owner;
+        int prev = -1;
+        for (int pnode = _phead[root]; pnode != node; pnode = _pnext[pnode]) prev = pnode;
+        if (prev < 0) set(PHEAD, root, _pnext[node]);
+        else set(PNEXT, prev, _pnext[node]);
+        if (_ptail[root] == node) set(PTAIL, root, prev);
+        set(POWNER, node, -1);
+        set(PCOUNT, idx, _pcount[idx] - 1);
+    }
+
+    /**
+     * Returns the first node with a piecen in the group that contains the specified node, or -1 if
+     * there are no piecens in the group. Use {@link #nextPiecen} to iterate over the rest.
+     */
+    public int firstPiecen (int node) {
+        return _phead[find(node)];
+    }
+
+    /**
+     * Returns the next node with a piecen after the supplied piecen node, or -1.
+     */
+    public int nextPiecen (int pnode) {
+        return _pnext[pnode];
+    }
+
+    /**
+     * Returns the index of the player that owns the piecen on the specified node, or -1.
+     */
+    public int getPiecenOwner (int node) {
+        return _powner[node];
+    }
+
+    /**
+     * Returns the number of piecens the specified player has in the group that contains the
+     * specified node.
+     */
+    public int getPiecenCount (int node, int owner) {
+        return _pcount[find(node)*Rules.MAX_PLAYERS + owner];
+    }
+
+    /**
+     * Returns a bit mask of the players that should earn points for the group containing the
+     * specified node (bit {@code 1 << playerIdx} for each scoring player). The player with the
+     * most piecens in a group gets points for the group. In the case of ties, all tying players
+     * score. A group with no piecens has no scorers.
+     */
+    public int getScorers (int node) {
+        int base = find(node)*Rules.MAX_PLAYERS, max = 0, scorers = 0;
+        for (int pp = 0; pp < Rules.MAX_PLAYERS; pp++) {
+            int count = _pcount[base + pp];
+            if (count == 0 || count < max) continue;
+            if (count > max) {
+                max = count;
+                scorers = 0;
+            }
+            scorers |= (1 << pp);
+        }
+        return scorers;
+    }
+
+    /**
+     * Starts or stops journaling changes. Starting a journal discards any previously journaled
+     * changes, as does stopping it.
+     */
+    public void setJournaling (boolean journaling) {
+        _journaling = journaling;
+        _jsize = 0;
+    }
+
+    /**
+     * Returns a mark identifying the current state, to which the groups can later be restored via
+     * {@link #rollback}. Only meaningful while journaling.
+     */
+    public int mark () {
+        return _jsize;
+    }
+
+    /**
+     * Reverts all changes journaled since the supplied mark was obtained, most recent first.
+     */
+    public void rollback (int mark) {
+        Asserts.checkState(_journaling, "Cannot roll back without a journal");
+        Asserts.checkArgument(mark <= _jsize, "Invalid journal mark %s > %s", mark, _jsize);
+        while (_jsize > mark) {
+            int value = _journal[--_jsize], entry = _journal[--_jsize];
+            int array = entry & ARRAY_MASK, index = entry >>> ARRAY_BITS;
+            if (array == SIZE) _size = value;
+            else getArray(array)[index] = value;
+        }
+    }
+
+    /**
+     * Returns true if {@code node} (a member of the group rooted at {@code root}) is the lowest
+     * numbered node of its tile in that group, and its tile also has a node in the group rooted at
+     * {@code other}.
+     */
+    protected boolean sharesTile (int node, int root, int other) {
+        boolean shared = false;
+        for (int sib = _tile[node], end = sib + _span[node]; sib < end; sib++) {
+            if (sib == node) continue;
+            int sroot = find(sib);
+            if (sroot == root && sib < node) return false; // tile will be counted via sib
+            if (sroot == other) shared = true;
+        }
+        return shared;
+    }
+
+    /**
+     * Updates a value in one of our arrays (or our size), journaling its previous value if we're
+     * journaling.
+     */
+    protected void set (int array, int index, int value) {
+        int[] values = (array == SIZE) ? null : getArray(array);
+        if (_journaling) {
+            if (_jsize + 2 > _journal.length) _journal = grow(_journal, _journal.length*2);
+            _journal[_jsize++] = (index << ARRAY_BITS) | array;
+            _journal[_jsize++] = (values == null) ? _size : values[index];
+        }
+        if (values == null) _size = value;
+        else values[index] = value;
+    }
+
+    /** Returns the array identified by the supplied journal id. Arrays that are only written
+     * when a node is allocated need no journaling and have no id. */
+    protected int[] getArray (int array) {
+        switch (array) {
+        case PARENT: return _parent;
+        case RANK: return _rank;
+        case CLAIM: return _claim;
+        case OPEN: return _open;
+        case TILES: return _tiles;
+        case SHIELDS: return _shields;
+        case MNEXT: return _mnext;
+        case MHEAD: return _mhead;
+        case MTAIL: return _mtail;
+        case MCOUNT: return _mcount;
+        case POWNER: return _powner;
+        case PNEXT: return _pnext;
+        case PHEAD: return _phead;
+        case PTAIL: return _ptail;
+        case PCOUNT: return _pcount;
+        default: throw new IllegalArgumentException("Invalid array id " + array);
+        }
+    }
+
+    protected void ensureCapacity (int size) {
+        if (size <= _parent.length) return;
+        int nsize = Math.max(size, _parent.length*2);
+        _parent = grow(_parent, nsize);
+        _rank = grow(_rank, nsize);
+        _claim = grow(_claim, nsize);
+        _open = grow(_open, nsize);
+        _tiles = grow(_tiles, nsize);
+        _shields = grow(_shields, nsize);
+        _shield = grow(_shield, nsize);
+        _tile = grow(_tile, nsize);
+        _span = grow(_span, nsize);
+        _mnext = grow(_mnext, nsize);
+        _mhead = grow(_mhead, nsize);
+        _mtail = grow(_mtail, nsize);
+        _mcount = grow(_mcount, nsize);
+        _powner = grow(_powner, nsize);
+        _pnext = grow(_pnext, nsize);
+        _phead = grow(_phead, nsize);
+        _ptail = grow(_ptail, nsize);
+        _pcount = grow(_pcount, nsize*Rules.MAX_PLAYERS);
+    }
+
+    protected static int[] grow (int[] values, int size) {
+        int[] nvalues = new int[size];
+        System.arraycopy(values, 0, nvalues, 0, values.length);
+        return nvalues;
+    }
+
+    /** The number of allocated nodes. */
+    protected int _size;
+
+    /** The parent of each node; roots are their own parent. */
+    protected int[] _parent = new int[INITIAL_CAPACITY];
+
+    /** An upper bound on the height of the tree rooted at each node. */
+    protected int[] _rank = new int[INITIAL_CAPACITY];
+
+    /** The claim group of each group, stored at the group's root. */
+    protected int[] _claim = new int[INITIAL_CAPACITY];
+
+    /** The number of open edges of each group, stored at the group's root. */
+    protected int[] _open = new int[INITIAL_CAPACITY];
+
+    /** The number of distinct tiles in each group, stored at the group's root. */
+    protected int[] _tiles = new int[INITIAL_CAPACITY];
+
+    /** The number of distinct tiles with shields in each group, stored at the group's root. */
+    protected int[] _shields = new int[INITIAL_CAPACITY];
+
+    /** Whether or not the tile to which each node belongs has a shield (1 or 0). */
+    protected int[] _shield = new int[INITIAL_CAPACITY];
+
+    /** The first node of the tile to which each node belongs. */
+    protected int[] _tile = new int[INITIAL_CAPACITY];
+
+    /** The number of features on the tile to which each node belongs. */
+    protected int[] _span = new int[INITIAL_CAPACITY];
+
+    /** Links together the nodes of a group that are on tiles with other features of the same type
+     * (-1 terminated). The head, tail and length of each group's list are stored at its root. */
+    protected int[] _mnext = new int[INITIAL_CAPACITY];
+    protected int[] _mhead = new int[INITIAL_CAPACITY];
+    protected int[] _mtail = new int[INITIAL_CAPACITY];
+    protected int[] _mcount = new int[INITIAL_CAPACITY];
+
+    /** The owner of the piecen placed on each node, or -1. */
+    protected int[] _powner = new int[INITIAL_CAPACITY];
+
+    /** Links together the nodes of a group that have piecens (-1 terminated). The head and tail
+     * of each group's list are stored at its root. */
+    protected int[] _pnext = new int[INITIAL_CAPACITY];
+    protected int[] _phead = new int[INITIAL_CAPACITY];
+    protected int[] _ptail = new int[INITIAL_CAPACITY];
+
+    /** The number of piecens each player has in each group, stored at the group's root (indexed
+     * by {@code root * Rules.MAX_PLAYERS + playerIdx}). */
+    protected int[] _pcount = new int[INITIAL_CAPACITY*Rules.MAX_PLAYERS];
+
+    /** Whether or not changes are being journaled. */
+    protected boolean _journaling;
+
+    /** Journaled changes, as pairs of (index {@code <<} {@link #ARRAY_BITS} | array id) and the
+     * value replaced by the change. */
+    protected int[] _journal = new int[INITIAL_CAPACITY];
+
+    /** The number of ints in use in {@link #_journal}. */
+    protected int _jsize;
+
+    /** Identifies the arrays (and size) whose changes are journaled. */
+    protected static final int PARENT = 0, RANK = 1, CLAIM = 2, OPEN = 3, TILES = 4, SHIELDS = 5,
+        MNEXT = 6, MHEAD = 7, MTAIL = 8, MCOUNT = 9, POWNER = 10, PNEXT = 11, PHEAD = 12,
+        PTAIL = 13, PCOUNT = 14, SIZE = 15;
+
+    /** The number of low bits of a journal entry that identify its array. */
+    protected static final int ARRAY_BITS = 4;
+    protected static final int ARRAY_MASK = (1 << ARRAY_BITS) - 1;
+
+    /** Enough nodes for a standard game without growing. */
+    protected static final int INITIAL_CAPACITY = 512;
+}
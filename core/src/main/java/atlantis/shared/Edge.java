@@ -54,6 +54,9 @@ public enum Edge
     /** Bit mask for a north by northwest connecting feature. */
     public static final int NNW_F = 0x1 << 11;
 
+    /** Bit mask containing all of the connecting feature bits. */
+    public static final int ALL_F = (0x1 << 12) - 1;
+
     /** Used to express edge mask adjacencies. */
     public static class Adjacency {
         /** The mask for the edge in question. */
@@ -98,13 +101,9 @@ public enum Edge
      * negative number of ticks.
      */
     public static int translateMask (int edgeMask, int ticks) {
-        int[] map = FEATURE_ORIENT_MAP[0];
-        if ((edgeMask & (NNE_F|ESE_F|SSW_F|WNW_F)) != 0) {
-            map = FEATURE_ORIENT_MAP[1];
-        } else if ((edgeMask & (ENE_F|SSE_F|WSW_F|NNW_F)) != 0) {
-            map = FEATURE_ORIENT_MAP[2];
-        }
-        return xlateMask(map, edgeMask, ticks);
+        // only masks containing a single edge are rotated, other masks are returned unchanged
+        if (edgeMask <= 0 || edgeMask > ALL_F || (edgeMask & (edgeMask-1)) != 0) return edgeMask;
+        return ROTATIONS[Integer.numberOfTrailingZeros(edgeMask) * 4 + (ticks & 3)];
     }
 
     /**
@@ -121,14 +120,18 @@ public enum Edge
         return buf.toString();
     }
 
-    /** {@link #translateMask} helper function. */
-    protected static int xlateMask (int[] map, int edgeMask, int ticks) {
-        for (int ii = 0; ii < map.length; ii++) {
-            if (map[ii] == edgeMask) {
-                return map[(ii + 4 + ticks) % 4];
+    /** Computes the {@link #ROTATIONS} table. */
+    protected static int[] computeRotations () {
+        int[] rots = new int[EDGE_NAMES.length * 4];
+        for (int[] map : FEATURE_ORIENT_MAP) {
+            for (int ii = 0; ii < map.length; ii++) {
+                int bit = Integer.numberOfTrailingZeros(map[ii]);
+                for (int ticks = 0; ticks < 4; ticks++) {
+                    rots[bit * 4 + ticks] = map[(ii + ticks) % 4];
+                }
             }
         }
-        return edgeMask;
+        return rots;
     }
 
     /** Mapping table used to rotate feature facements. */
@@ -143,4 +146,8 @@ public enum Edge
     protected static final String[] EDGE_NAMES = {
         "NORTH", "EAST", "SOUTH", "WEST", "NNE", "ENE", "ESE", "SSE", "SSW", "WSW", "WNW", "NNW",
     };
+
+    /** The rotated mask of every single edge mask, indexed by {@code bit * 4 + ticks} (where bit
+     * is the position of the edge's bit and ticks is a clockwise rotation from 0 to 3). */
+    protected static final int[] ROTATIONS = computeRotations();
 }
@@ -72,15 +72,15 @@ public class GameObject extends NexusObject
     public GameObject (String[] players, DService<GameService> gameSvc) {
         this.players = players;
         this.gameSvc = gameSvc;
+
+        // keep our piecen indices in sync with the piecens set
+        piecens.connect(_indexer);
     }
 
     /** Returns the number of piecens in play by the specified player. */
     public int piecensInPlay (int playerIdx) {
-        int count = 0;
-        for (Piecen p : piecens) {
-            if (p.ownerIdx == playerIdx) count++;
-        }
-        return count;
+        indexPiecens();
+        return _inPlay[playerIdx];
     }
 
     /** Returns the number of piecens available for play by the specified player. */
@@ -90,12 +90,8 @@ public class GameObject extends NexusObject
 
     /** Returns the piecen at the specified location, or null. */
     public Piecen piecenAt (Location loc) {
-        for (Piecen p : piecens) {
-            if (p.loc.equals(loc)) {
-                return p;
-            }
-        }
-        return null;
+        indexPiecens();
+        return _piecenAt.get(loc);
     }
 
     @Override
@@ -118,4 +114,39 @@ public class GameObject extends NexusObject
     protected int getAttributeCount () {
         return 9;
     }
+
+    /**
+     * Builds our piecen indices from the contents of {@link #piecens}, if they have not already
+     * been built. This is done lazily because the contents of a streamed object are populated
+     * without emitting add events; thereafter the indices are updated as piecens come and go.
+     */
+    protected void indexPiecens () {
+        if (_inPlay != null) return;
+        _inPlay = new int[players.length];
+        _piecenAt = new BoardMap<Piecen>();
+        for (Piecen p : piecens) {
+            _inPlay[p.ownerIdx]++;
+            _piecenAt.put(p.loc, p);
+        }
+    }
+
+    /** Keeps our piecen indices in sync with {@link #piecens}. The indices may be built after a
+     * change has been applied to the set but before its event is delivered, in which case the
+     * change is already reflected in the indices and must not be applied again. */
+    protected final DSet.Listener<Piecen> _indexer = new DSet.Listener<Piecen>() {
+        @Override public void onAdd (Piecen piecen) {
+            if (_inPlay == null) return; // not yet indexed
+            if (_piecenAt.put(piecen.loc, piecen) == null) _inPlay[piecen.ownerIdx]++;
+        }
+        @Override public void onRemove (Piecen piecen) {
+            if (_inPlay == null) return; // not yet indexed
+            if (_piecenAt.remove(piecen.loc) != null) _inPlay[piecen.ownerIdx]--;
+        }
+    };
+
+    /** The number of piecens in play by each player, or null if not yet indexed. */
+    protected int[] _inPlay;
+
+    /** The piecens in play, by location. */
+    protected BoardMap<Piecen> _piecenAt;
 }
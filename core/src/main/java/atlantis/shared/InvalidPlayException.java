@@ -0,0 +1,40 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.shared;
+
+import tripleplay.util.Logger;
+
+/**
+ * Thrown by {@link AbstractGameManager#play} when a player submits a play that is not legal.
+ * The {@link #reason} identifies which rule the play broke.
+ */
+public class InvalidPlayException extends IllegalStateException
+{
+    /** The ways in which a play may be invalid. */
+    public enum Reason {
+        /** The player submitting the play does not hold the turn. */
+        NOT_TURN_HOLDER,
+        /** The play is missing its tile, orientation or location (or is missing entirely). */
+        MALFORMED_PLAY,
+        /** The play does not place the tile the player was given. */
+        WRONG_TILE,
+        /** The tile does not fit (or has no neighbors) at the specified location. */
+        ILLEGAL_PLACEMENT,
+        /** The play includes a piecen but the player has none available. */
+        NO_PIECENS,
+        /** The piecen is not the player's, is not on the placed tile, or names no feature. */
+        MALFORMED_PIECEN,
+        /** The piecen is placed on a feature that is already claimed. */
+        CLAIMED_FEATURE
+    }
+
+    /** The reason the play was rejected. */
+    public final Reason reason;
+
+    public InvalidPlayException (Reason reason, String message, Object... args) {
+        super(Logger.format(message, args) + " [reason=" + reason + "]");
+        this.reason = reason;
+    }
+}
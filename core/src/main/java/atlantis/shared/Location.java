@@ -62,6 +62,19 @@ public class Location implements Streamable
         return ns;
     }
 
+    /**
+     * Returns this location rotated about the origin (the starting tile) by the specified number
+     * of clockwise (if positive, counterclockwise if negative) quarter turns.
+     */
+    public Location rotate (int ticks) {
+        switch (ticks & 3) {
+        case 1: return new Location(-y, x);
+        case 2: return new Location(-x, -y);
+        case 3: return new Location(y, -x);
+        default: return this;
+        }
+    }
+
     /**
      * Returns the direction to the supplied other tile.
      */
@@ -89,7 +102,8 @@ public class Location implements Streamable
 
     @Override
     public int hashCode () {
-        return x ^ y;
+        // x ^ y would hash every location on a diagonal to the same value
+        return 31 * x + y;
     }
 
     @Override
@@ -4,25 +4,18 @@
 
 package atlantis.shared;
 
-import java.util.Iterator;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.Map;
 
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
-import com.threerings.nexus.distrib.DSet;
-
 import playn.core.Asserts;
 
-import tripleplay.util.Logger;
-
 import static atlantis.shared.Log.log;
 
 /**
@@ -44,7 +37,11 @@ public class Logic
 
         /** Returns the count of unclaimed features on our tile. */
         public int getUnclaimedCount () {
-            return play.tile.terrain.features.length - _claims.size();
+            int count = 0;
+            for (int ii = 0, ll = play.tile.terrain.features.length; ii < ll; ii++) {
+                if (getClaimGroup(ii) == 0) count++;
+            }
+            return count;
         }
 
         /**
@@ -55,8 +52,8 @@ public class Logic
          * zero if no feature matched the supplied mask.
          */
         public int getFeatureGroup (int edgeMask) {
-            Feature f = play.findFeature(edgeMask);
-            return (f == null) ? 0 : getClaimGroup(f);
+            int fidx = play.findFeatureIndex(edgeMask);
+            return (fidx < 0) ? 0 : getClaimGroup(fidx);
         }
 
         /**
@@ -64,31 +61,58 @@ public class Logic
          * been assigned to said feature.
          */
         public int getClaimGroup (Feature f) {
-            Integer group = _claims.get(f);
-            return (group == null) ? 0 : group;
+            return getClaimGroup(play.getFeatureIndex(f));
+        }
+
+        /**
+         * Returns the claim group assigned to the feature at the specified index, or zero if no
+         * claim group has been assigned to said feature.
+         */
+        public int getClaimGroup (int featureIdx) {
+            return (_base < 0) ? 0 : _groups.getClaimGroup(_base + featureIdx);
         }
 
         /**
-         * Sets the claim group for the specified feature. This also updates the claim group for
-         * any piecen that was placed on that feature as well.
+         * Sets the claim group for the specified feature. As claim groups are tracked for entire
+         * groups of connected features, this also updates the claim group for every feature
+         * connected to the specified feature, and for any piecens placed on those features.
          */
         public void setClaimGroup (Feature f, int claimGroup) {
-            // update the claim group slot for this feature
-            _claims.put(f, claimGroup);
+            Asserts.checkState(_base >= 0, "Cannot claim features on unplaced tile %s", play);
+            _groups.setClaimGroup(getNode(play.getFeatureIndex(f)), claimGroup);
+        }
 
-            // if we have a piecen placed on the feature, we need to update its claim group as well
-            Piecen piecen = _piecens.get(play.loc);
-            if (piecen != null && piecen.featureIdx == play.getFeatureIndex(f)) {
-                _piecenGroups.put(play.loc, claimGroup);
-            }
+        /**
+         * Returns the node in {@link #_groups} that represents the feature at the specified index.
+         */
+        protected int getNode (int featureIdx) {
+            return _base + featureIdx;
         }
 
-        Claim (Placement play) {
+        Claim (Placement play, int base) {
             this.play = play;
+            _base = base;
         }
 
-        /** A mapping from feature to claim group, for claimed features. */
-        protected final Map<Feature,Integer> _claims = Maps.newHashMap();
+        /** The index of the node for our tile's first feature, or -1 if our tile is not placed. */
+        protected final int _base;
+    }
+
+    /** The legal plays of a single terrain, as of a particular frontier version. */
+    protected static class PlayCache {
+        /** The frontier version as of which this cache is up to date. */
+        public int version;
+
+        /** A bit mask of the legal orientations (by index) at each legal location. */
+        public final BoardMap<Integer> orients = new BoardMap<Integer>();
+
+        /** The legal locations, and an unmodifiable view of them. */
+        public Set<Location> locs = Sets.newHashSet();
+        public Set<Location> view = Collections.unmodifiableSet(locs);
+
+        /** Whether {@link #view} has been handed out, in which case {@link #locs} must be copied
+         * rather than changed when the frontier changes. */
+        public boolean shared;
     }
 
     /** Used to report score information following a tile placement. */
@@ -130,112 +154,261 @@ public class Logic
      * Notes the specified play, and inherits claim information onto it from its neighbors.
      */
     public void addPlacement (Placement play) {
+        journal(UNDO_PLACEMENT, play);
+        toggleHash(play);
         _plays.put(play.loc, play);
+        updateFrontier(play);
+        Claim claim = new Claim(play, _groups.addTile(play.tile));
+        _claims.put(play.loc, claim);
 
-        // inherit claim groups for the features on this tile; this may result in the merging of
-        // two previously unconnected claim groups, so we enumerate the full group in each case and
-        // reassign the claim group as needed
-        List<TileFeature> tfs = Lists.newArrayList();
-        for (Feature f : play.tile.terrain.features) {
-            tfs.clear();
-            enumerateGroup(play, f, tfs);
-
-            // first find the first non-zero claim group
-            int group = 0;
-            for (TileFeature tf : tfs) {
-                int tgroup = getClaim(tf.play).getClaimGroup(tf.feature);
-                if (tgroup != 0 && group == 0) {
-                    group = tgroup;
-                    break;
+        // connect the features on this tile to the features on neighboring tiles that they abut;
+        // this may result in the merging of two previously unconnected claim groups, in which case
+        // the merged group inherits a claim from one of them
+        for (Edge.Adjacency adj : Edge.ADJACENCIES) {
+            Placement neighbor = _plays.get(play.loc, adj.dir);
+            if (neighbor == null) continue;
+
+            // both the edge on our tile and the edge on our neighbor are no longer open
+            int fidx = play.findFeatureIndex(adj.edge);
+            int nfidx = neighbor.findFeatureIndex(adj.opposite);
+            if (fidx >= 0) _groups.closeEdge(claim.getNode(fidx));
+            Claim nclaim = getClaim(neighbor);
+            if (nfidx >= 0) _groups.closeEdge(nclaim.getNode(nfidx));
+
+            if (fidx < 0 || nfidx < 0) {
+                if (fidx != nfidx) {
+                    log.warning("Tile mismatch while propagating", "play", play, "fidx", fidx,
+                                "neighbor", neighbor, "edge", Edge.maskToString(adj.edge));
                 }
+                continue;
             }
+            _groups.union(claim.getNode(fidx), nclaim.getNode(nfidx));
+        }
 
-            // if we found no non-zero group, we have nothing to inherit
-            if (group == 0) continue;
-
-            // otherwise reassign that group to all tiles
-            for (TileFeature tf : tfs) {
-                getClaim(tf.play).setClaimGroup(tf.feature, group);
+        // the cells around any cloister on this tile or on a neighboring tile are filling up
+        int cloisterIdx = getCloisterIndex(play);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                if (dx == 0 && dy == 0) continue;
+                Claim nclaim = _claims.get(play.loc.x+dx, play.loc.y+dy);
+                if (nclaim == null) continue;
+                if (cloisterIdx >= 0) _groups.closeEdge(claim.getNode(cloisterIdx));
+                int ncloisterIdx = getCloisterIndex(nclaim.play);
+                if (ncloisterIdx >= 0) _groups.closeEdge(nclaim.getNode(ncloisterIdx));
             }
         }
     }
 
     /**
-     * Notes the specified piecement placement, assigns it a claim group and propagates its claim
-     * information to connected tiles. The tile placement associated with this piecen must have
-     * already been added via {@link #addPlacement}.
+     * Notes the specified piecement placement and assigns it (and all features connected to the
+     * feature on which it was placed) a new claim group. The tile placement associated with this
+     * piecen must have already been added via {@link #addPlacement}.
      */
     public void addPiecen (Piecen piecen) {
+        journal(UNDO_ADD_PIECEN, piecen);
+        toggleHash(piecen);
         _piecens.put(piecen.loc, piecen);
 
         // make sure a play exists at the appropriate location
-        Placement play = Asserts.checkNotNull(
+        Asserts.checkNotNull(
             _plays.get(piecen.loc), "Piecen played at location where no tile exists? %s", piecen);
 
-        List<TileFeature> flist = Lists.newArrayList();
-        enumerateGroup(play, play.getFeature(piecen.featureIdx), flist);
-        int claimGroup = ++_claimGroupCounter;
-        for (TileFeature feat : flist) {
-            // one of these calls will result in this piecen's claim group being mapped
-            getClaim(feat.play).setClaimGroup(feat.feature, claimGroup);
+        int node = _claims.get(piecen.loc).getNode(piecen.featureIdx);
+        _groups.setClaimGroup(node, ++_claimGroupCounter);
+        _groups.addPiecen(node, piecen.ownerIdx);
+        if (node >= _nodePiecens.length) {
+            Piecen[] npiecens = new Piecen[Math.max(node+1, _nodePiecens.length*2)];
+            System.arraycopy(_nodePiecens, 0, npiecens, 0, _nodePiecens.length);
+            _nodePiecens = npiecens;
         }
+        _nodePiecens[node] = piecen;
     }
 
     /**
      * Clears the metadata from the specified piecen (due to it being reclaimed).
      */
     public void clearPiecen (Piecen piecen) {
-        _piecens.remove(piecen.loc);
-        _piecenGroups.remove(piecen.loc);
+        if (_piecens.remove(piecen.loc) == null) {
+            journal(UNDO_CLEAR_PIECEN, null); // nothing to undo, but keep undo() symmetric
+            return;
+        }
+        journal(UNDO_CLEAR_PIECEN, piecen);
+        toggleHash(piecen);
+        int node = _claims.get(piecen.loc).getNode(piecen.featureIdx);
+        _groups.removePiecen(node);
+        _nodePiecens[node] = null;
     }
 
     /**
-     * Returns the claim metadata for the specified location. New metadata will be created if none
-     * already exists.
+     * Enables or disables the undo journal. While it is enabled, every call to {@link
+     * #addPlacement}, {@link #addPiecen} and {@link #clearPiecen} is recorded and can be reverted
+     * via {@link #undo}. Enabling or disabling the journal discards any recorded changes.
      */
-    public Claim getClaim (Placement play) {
-        Claim claim = _claims.get(play.loc);
-        if (claim == null) {
-            _claims.put(play.loc, claim = new Claim(play));
-        }
-        return claim;
+    public void setJournaling (boolean journaling) {
+        _groups.setJournaling(journaling);
+        _journaling = journaling;
+        _undoSize = 0;
+        _undoRefs.clear();
     }
 
     /**
-     * Returns the set of board positions where the supplied tile can be legally played.
+     * Returns true if there is a journaled change that can be reverted via {@link #undo}.
      */
-    public Set<Location> computeLegalPlays (GameTile tile) {
-        Set<Location> locs = Sets.newHashSet();
+    public boolean canUndo () {
+        return _undoSize > 0;
+    }
 
-        // compute the neighbors of all existing tiles
-        for (Placement play : _plays.values()) {
-            locs.addAll(play.loc.neighbors());
-        }
+    /**
+     * Reverts the most recent journaled call to {@link #addPlacement}, {@link #addPiecen} or
+     * {@link #clearPiecen}, restoring this logic to exactly the state it was in before the call.
+     */
+    public void undo () {
+        Asserts.checkState(canUndo(), "No journaled changes to undo");
+        int mark = _undoOps[--_undoSize], op = _undoOps[--_undoSize];
+        Object ref = _undoRefs.remove(_undoRefs.size()-1);
+        _groups.rollback(mark);
+
+        switch (op) {
+        case UNDO_PLACEMENT:
+            Placement play = (Placement)ref;
+            toggleHash(play);
+            _plays.remove(play.loc);
+            _claims.remove(play.loc);
+            // the frontier is a function of the placed tiles, so we just recompute the cells
+            // that the play affected
+            refreshFrontier(play.loc.x, play.loc.y);
+            for (Orient dir : Orient.values()) {
+                refreshFrontier(play.loc.x+dir.dx, play.loc.y+dir.dy);
+            }
+            break;
 
-        // now go back and remove the occupied tiles
-        for (Placement play : _plays.values()) {
-            locs.remove(play.loc);
-        }
-
-        // now remove any position that is not a legal play
-      OUTER:
-        for (Iterator<Location> iter = locs.iterator(); iter.hasNext(); ) {
-            Location pos = iter.next();
-          ORIENT:
-            for (Orient orient : Orient.values()) {
-                Placement play = new Placement(tile, orient, pos);
-                for (Location npos : pos.neighbors()) {
-                    Placement neighbor = _plays.get(npos);
-                    if (neighbor != null && !tilesMatch(neighbor, play)) {
-                        continue ORIENT; // try next orientation
-                    }
-                }
-                continue OUTER; // this orientation matches
+        case UNDO_ADD_PIECEN:
+            Piecen added = (Piecen)ref;
+            toggleHash(added);
+            _piecens.remove(added.loc);
+            _nodePiecens[_claims.get(added.loc).getNode(added.featureIdx)] = null;
+            _claimGroupCounter--;
+            break;
+
+        case UNDO_CLEAR_PIECEN:
+            Piecen cleared = (Piecen)ref;
+            if (cleared != null) {
+                toggleHash(cleared);
+                _piecens.put(cleared.loc, cleared);
+                _nodePiecens[_claims.get(cleared.loc).getNode(cleared.featureIdx)] = cleared;
             }
-            iter.remove(); // no matches, remove the location
+            break;
+        }
+    }
+
+    /**
+     * Returns a 64-bit Zobrist hash of the current board: the exclusive or of a hash of each
+     * placement (see {@link #hash(Placement)}) and of each piecen (see {@link #hash(Piecen)}).
+     * Equal boards have equal hashes regardless of the order in which they were built, and
+     * unequal boards are very unlikely to. The hash is updated in constant time by each change.
+     */
+    public long getHash () {
+        return _hashes[0];
+    }
+
+    /**
+     * Returns the hash that the current board would have were it rotated about the origin by the
+     * specified number of clockwise quarter turns (see {@link Placement#rotate}). These hashes
+     * are maintained alongside {@link #getHash}, so this is also a constant time operation.
+     */
+    public long getHash (int ticks) {
+        return _hashes[ticks & 3];
+    }
+
+    /**
+     * Returns the number of clockwise quarter turns that map the current board to its canonical
+     * rotation: the one with the smallest hash. Boards that differ only by a rotation of the whole
+     * board share a canonical rotation, so caches keyed on {@link #getCanonicalHash} can share
+     * their entries. Rotating a move on this board by the returned amount yields the equivalent
+     * move on the canonical board.
+     */
+    public int getCanonicalRotation () {
+        int best = 0;
+        for (int ii = 1; ii < _hashes.length; ii++) {
+            if (_hashes[ii] < _hashes[best]) best = ii;
         }
+        return best;
+    }
+
+    /**
+     * Returns the hash of the canonical rotation of the current board (see {@link
+     * #getCanonicalRotation}).
+     */
+    public long getCanonicalHash () {
+        return _hashes[getCanonicalRotation()];
+    }
+
+    /**
+     * Returns the hash of the specified placement, by location, terrain, orientation and shield.
+     */
+    public static long hash (Placement play) {
+        return hash(play, 0);
+    }
+
+    /**
+     * Returns the hash of the specified placement rotated by the specified number of clockwise
+     * quarter turns, without creating the rotated placement.
+     */
+    public static long hash (Placement play, int ticks) {
+        int attrs = (play.tile.terrain.ordinal() * 4 + ((play.orient.index + ticks) & 3)) * 2 +
+            (play.tile.hasShield ? 1 : 0);
+        return mix(rotatedKey(play.loc, ticks) ^ mix(PLACEMENT_SALT + attrs));
+    }
+
+    /**
+     * Returns the hash of the specified piecen, by location, feature and owner.
+     */
+    public static long hash (Piecen piecen) {
+        return hash(piecen, 0);
+    }
+
+    /**
+     * Returns the hash of the specified piecen rotated by the specified number of clockwise
+     * quarter turns, without creating the rotated piecen.
+     */
+    public static long hash (Piecen piecen, int ticks) {
+        int attrs = piecen.featureIdx * Rules.MAX_PLAYERS + piecen.ownerIdx;
+        return mix(rotatedKey(piecen.loc, ticks) ^ mix(PIECEN_SALT + attrs));
+    }
+
+    /**
+     * Returns the claim metadata for the specified placement. If the placement has not been added
+     * to the board, an empty claim is returned which reports all features as unclaimed.
+     */
+    public Claim getClaim (Placement play) {
+        Claim claim = _claims.get(play.loc);
+        return (claim == null) ? new Claim(play, -1) : claim;
+    }
 
-        return locs;
+    /**
+     * Returns the set of board positions where the supplied tile can be legally played. The legal
+     * plays are remembered for each terrain and brought up to date incrementally as the frontier
+     * changes, so repeated queries for the same terrain (by the same or different tiles) are
+     * cheap. The returned set cannot be modified and does not change when the board does.
+     */
+    public Set<Location> computeLegalPlays (GameTile tile) {
+        PlayCache cache = getPlayCache(tile.terrain);
+        cache.shared = true;
+        return cache.view;
+    }
+
+    /**
+     * Returns true if the supplied tile can be legally played somewhere on the board. This stops
+     * at the first legal placement and remembers its answer for each terrain until the frontier
+     * next changes, so it is cheap to call repeatedly for the tiles in the bag.
+     */
+    public boolean hasLegalPlay (GameTile tile) {
+        int tidx = tile.terrain.ordinal();
+        if (_playableVersions[tidx] != _frontierVersion) {
+            _playable[tidx] = computeHasLegalPlay(tile.terrain);
+            _playableVersions[tidx] = _frontierVersion;
+        }
+        return _playable[tidx];
     }
 
     /**
@@ -243,30 +416,79 @@ public class Logic
      * location.
      */
     public List<Orient> computeLegalOrients (GameTile tile, Location loc) {
-        List<Orient> orients = Lists.newArrayList();
-
-        // fetch the neighbors of this tile
-        List<Placement> neighbors = Lists.newArrayList();
-        for (Location nloc : loc.neighbors()) {
-            Placement nplay = _plays.get(nloc);
-            if (nplay != null) {
-                neighbors.add(nplay);
-            }
+        if (_frontier.containsKey(loc)) {
+            Integer mask = getPlayCache(tile.terrain).orients.get(loc);
+            return ORIENT_LISTS.get((mask == null) ? 0 : mask);
         }
 
-        // and validate each candidate orientation against them
-      ORIENT:
+        // the location is not on the frontier (it is occupied, or has no neighbors)
+        List<Orient> orients = Lists.newArrayList();
+        int required = computeRequiredEdges(loc.x, loc.y);
         for (Orient orient : Orient.values()) {
-            Placement play = new Placement(tile, orient, loc);
-            for (Placement nplay : neighbors) {
-                if (!tilesMatch(nplay, play)) continue ORIENT;
-            }
-            orients.add(orient);
+            if (tile.terrain.fits(orient, required)) orients.add(orient);
         }
-
         return orients;
     }
 
+    /**
+     * Returns true if the specified tile can be legally played in the specified orientation at
+     * the specified location. This does not account for any piecen played along with the tile.
+     */
+    public boolean isLegalPlay (GameTile tile, Orient orient, Location loc) {
+        Integer required = _frontier.get(loc);
+        return (required != null) && tile.terrain.fits(orient, required);
+    }
+
+    /**
+     * Returns true if the specified tile can be legally played in the specified orientation at
+     * the specified location along with a piecen on the specified feature (or no piecen, if the
+     * feature index is -1). This is the check made by {@link #computeMoves} for a single move;
+     * it does not account for whether the player has a piecen available.
+     */
+    public boolean isLegalMove (GameTile tile, Orient orient, Location loc, int featureIdx) {
+        if (!isLegalPlay(tile, orient, loc)) return false;
+        if (featureIdx < 0) return true;
+        if (featureIdx >= tile.terrain.features.length) return false;
+        fetchNeighborClaims(loc.x, loc.y);
+        return (computeClaimedFeatures(tile, orient) & (1 << featureIdx)) == 0;
+    }
+
+    /**
+     * Generates every legal move for the specified tile into the supplied buffer, replacing its
+     * previous contents: one move for each legal placement of the tile, followed by one move for
+     * each unclaimed feature of that placement on which the player may place a piecen.
+     *
+     * @param piecensInPlay the number of piecens the moving player has in play; if they have no
+     * piecens available (per {@link Rules#STARTING_PIECENS}), only piecen-less moves are generated.
+     * @return the number of moves generated.
+     */
+    public int computeMoves (GameTile tile, int piecensInPlay, MoveBuffer moves) {
+        moves.reset(tile);
+        boolean piecens = (piecensInPlay < Rules.STARTING_PIECENS);
+        int fcount = tile.terrain.features.length;
+        for (int slot = _frontier.firstSlot(); slot >= 0; slot = _frontier.nextSlot(slot)) {
+            int required = _frontier.slotValue(slot);
+            int x = _frontier.slotX(slot), y = _frontier.slotY(slot);
+            boolean fetched = false;
+            for (Orient orient : ORIENTS) {
+                if (!tile.terrain.fits(orient, required)) continue;
+                moves.add(x, y, orient, -1);
+                if (!piecens) continue;
+
+                // look up our neighbors' claims once per location
+                if (!fetched) {
+                    fetchNeighborClaims(x, y);
+                    fetched = true;
+                }
+                int claimed = computeClaimedFeatures(tile, orient);
+                for (int fidx = 0; fidx < fcount; fidx++) {
+                    if ((claimed & (1 << fidx)) == 0) moves.add(x, y, orient, fidx);
+                }
+            }
+        }
+        return moves.size();
+    }
+
     /**
      * Computes the claim groups for the specified feature of the specified potential placement. In
      * cases where multiple claim groups abut a single feature, the higher valued group will be
@@ -279,26 +501,22 @@ public class Logic
             if ((f.edgeMask & adj.edge) == 0) continue;
 
             // look up our neighbor in this direction
-            Placement neighbor = _plays.get(loc.neighbor(adj.dir.rotate(orient.index)));
+            Placement neighbor = _plays.get(loc, adj.dir.rotate(orient.index));
             if (neighbor == null) continue;
 
-            // translate the target mask into our orientation
-            int mask = Edge.translateMask(adj.edge, orient.index);
-            int opp_mask = Edge.translateMask(adj.opposite, orient.index);
-
             // obtain the index of the feature on the opposing tile
-            Feature nf = neighbor.findFeature(opp_mask);
-            if (nf == null) {
+            int opp_mask = Edge.translateMask(adj.opposite, orient.index);
+            int nfidx = neighbor.findFeatureIndex(opp_mask);
+            if (nfidx < 0) {
                 log.warning("Tile mismatch while inheriting", "tile", tile, "orient", orient,
-                            "loc", loc, "feat", f, "neighbor", neighbor,
-                            "srcEdge", mask, "destEdge", opp_mask);
+                            "loc", loc, "feat", f, "neighbor", neighbor, "destEdge", opp_mask);
                 continue;
             }
 
             // inherit this feature's group; we use max() here to ensure that if a feature
             // abuts an unclaimed feature (0) and a claimed feature (>0) that we always inherit
             // the claimed feature's group
-            claim = Math.max(claim, getClaim(neighbor).getClaimGroup(nf));
+            claim = Math.max(claim, getClaim(neighbor).getClaimGroup(nfidx));
         }
         return claim;
     }
@@ -323,44 +541,43 @@ public class Logic
             groups.add(group);
 
             // see who should score this feature
-            Set<Integer> scorers = getScorers(group);
+            int node = claim.getNode(play.getFeatureIndex(f));
+            Set<Integer> scorers = getScorers(node);
             // if we have no scorers, the feature is unclaimed; skip it
             if (scorers.isEmpty()) continue;
 
             // if we made it this far, we may have something to report
             int score = computeFeatureScore(play, f);
             if (score != 0) {
-                scores.add(new FeatureScore(f, scorers, score, getPiecens(group)));
+                scores.add(new FeatureScore(f, scorers, score, getPiecens(node)));
             }
         }
 
         // we may have also completed a cloister, so we check that as well
-        for (Location nloc : play.loc.neighborhood()) {
-            Placement nplay = _plays.get(nloc);
-            if (nplay == null) continue;
-
-            // check whether this tile has a piecen upon't
-            Piecen p = _piecens.get(nloc);
-            if (p == null) continue;
-
-            // check whether this tile contains a cloister feature
-            Feature cf = null;
-            for (Feature f : nplay.tile.terrain.features) {
-                if (f.type == Feature.Type.CLOISTER) {
-                    cf = f;
-                    break;
-                }
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                int nx = play.loc.x+dx, ny = play.loc.y+dy;
+                Placement nplay = _plays.get(nx, ny);
+                if (nplay == null) continue;
+
+                // check whether this tile has a piecen upon't
+                Piecen p = _piecens.get(nx, ny);
+                if (p == null) continue;
+
+                // check whether this tile contains a cloister feature
+                int cloisterIdx = getCloisterIndex(nplay);
+                if (cloisterIdx < 0) continue;
+                Feature cf = nplay.getFeature(cloisterIdx);
+
+                // make sure the piecen is on the cloister
+                if (p.featureIdx != cloisterIdx) continue;
+
+                // finally, score the cloister, which will always have only one scorer, one
+                // involved piecen, and a non-zero score (simple!)
+                scores.add(new FeatureScore(cf, Collections.singleton(p.ownerIdx),
+                                            computeFeatureScore(nplay, cf),
+                                            Collections.singletonList(p)));
             }
-            if (cf == null) continue;
-
-            // make sure the piecen is on the cloister
-            if (_piecenGroups.get(p.loc) != getClaim(nplay).getClaimGroup(cf)) continue;
-
-            // finally, score the cloister, which will always have only one scorer, one involved
-            // piecen, and a non-zero score (simple!)
-            scores.add(new FeatureScore(cf, Collections.singleton(p.ownerIdx),
-                                        computeFeatureScore(nplay, cf),
-                                        Collections.singletonList(p)));
         }
 
         return scores;
@@ -387,14 +604,15 @@ public class Logic
                 processedClaims.add(group);
 
                 // determine who will earn points for this claim
-                Set<Integer> scorers = getScorers(group);
+                int node = claim.getNode(play.getFeatureIndex(f));
+                Set<Integer> scorers = getScorers(node);
                 // if we have no scorers, the feature is unclaimed; skip it
                 if (scorers.isEmpty()) continue;
 
                 // if we made it this far, we may have something to report
                 int score = computeFeatureScore(play, f);
                 if (score != 0) {
-                    scores.add(new FeatureScore(f, scorers, score, getPiecens(group)));
+                    scores.add(new FeatureScore(f, scorers, score, getPiecens(node)));
                 }
             }
         }
@@ -406,26 +624,24 @@ public class Logic
      * Computes the scores for the claimed farms.
      */
     public List<FeatureScore> computeFarmScores () {
-        // compute fake claim groups for all cities: >0 for complete, <0 for incomplete
-        Map<Location,Claim> cityClaims = Maps.newHashMap();
+        // collect the complete cities that touch each claimed farm; a farm touches every city on
+        // every tile that contains some part of the farm
+        Map<Integer,Set<Integer>> farmCities = Maps.newHashMap();
         for (Placement play : _plays.values()) {
-            cityClaims.put(play.loc, new Claim(play));
-        }
-        List<TileFeature> tfs = Lists.newArrayList();
-
-        // also compute and store the size of all cities
-        int nextCityClaimGroup = 0;
-        for (Placement play : _plays.values()) {
-            for (Feature f : play.tile.terrain.features) {
-                if (f.type != Feature.Type.CITY) continue; // only care about cities
-                if (cityClaims.get(play.loc).getClaimGroup(f) != 0) continue; // already handled
-
-                tfs.clear();
-                boolean completed = enumerateGroup(play, f, tfs);
-                int group = ++nextCityClaimGroup;
-                if (!completed) group = -group;
-                for (TileFeature tf : tfs) {
-                    cityClaims.get(tf.play.loc).setClaimGroup(tf.feature, group);
+            Claim claim = getClaim(play);
+            Feature[] features = play.tile.terrain.features;
+            for (int fidx = 0; fidx < features.length; fidx++) {
+                if (features[fidx].type != Feature.Type.GRASS) continue; // only care about grass
+                int group = claim.getClaimGroup(fidx);
+                if (group == 0) continue; // skip unclaimed farms
+
+                Set<Integer> cities = farmCities.get(group);
+                if (cities == null) farmCities.put(group, cities = Sets.<Integer>newHashSet());
+                for (int cidx = 0; cidx < features.length; cidx++) {
+                    if (features[cidx].type != Feature.Type.CITY) continue;
+                    // cities are identified by the root node of their group
+                    int city = claim.getNode(cidx);
+                    if (_groups.isComplete(city)) cities.add(_groups.find(city));
                 }
             }
         }
@@ -442,21 +658,9 @@ public class Logic
                 if (group == 0 || handledClaims.contains(group)) continue;
                 handledClaims.add(group);
 
-                // enumerate all the tiles in this farm, and count adjacent (complete) cities
-                Set<Integer> scoringCities = Sets.newHashSet();
-                tfs.clear();
-                enumerateGroup(play, f, tfs);
-                for (TileFeature tf : tfs) {
-                    for (Feature tff : tf.play.tile.terrain.features) {
-                        if (tff.type == Feature.Type.CITY) {
-                            int cgroup = cityClaims.get(tf.play.loc).getClaimGroup(tff);
-                            if (cgroup > 0) scoringCities.add(cgroup);
-                        }
-                    }
-                }
-
-                int score = scoringCities.size() * 3; // TODO: pass to rules?
-                scores.add(new FeatureScore(f, getScorers(group), score, getPiecens(group)));
+                int score = farmCities.get(group).size() * 3; // TODO: pass to rules?
+                int node = getClaim(play).getNode(play.getFeatureIndex(f));
+                scores.add(new FeatureScore(f, getScorers(node), score, getPiecens(node)));
             }
         }
 
@@ -464,75 +668,175 @@ public class Logic
     }
 
     /**
-     * Returns true if the two supplied placements match up (represent a legal board position).
+     * Removes the supplied play's location from the frontier and adds (or further constrains) the
+     * empty locations that neighbor it.
      */
-    protected boolean tilesMatch (Placement play1, Placement play2) {
-        // based on the relative positions of the two placements, determine the "natural" edges to
-        // be compared (east/west or north/south)
-        Orient orient1 = play1.loc.directionTo(play2.loc), orient2 = orient1.opposite();
+    protected void updateFrontier (Placement play) {
+        _frontier.remove(play.loc);
+        noteFrontierChange(play.loc.x, play.loc.y);
+        for (Orient dir : Orient.values()) {
+            int nx = play.loc.x+dir.dx, ny = play.loc.y+dir.dy;
+            if (_plays.containsKey(nx, ny)) continue;
+            noteFrontierChange(nx, ny);
+            Integer required = _frontier.get(nx, ny);
+            // the tile placed there must match the edge of our tile that faces it
+            _frontier.put(nx, ny, Terrain.requireEdge(
+                              (required == null) ? 0 : required, dir.opposite(),
+                              play.tile.terrain.getEdge(dir.rotate(-play.orient.index))));
+        }
+    }
 
-        // now rotate those "natural" edges based on the orientations of the placements
-        orient1 = orient1.rotate(-play1.orient.index);
-        orient2 = orient2.rotate(-play2.orient.index);
+    /**
+     * Recomputes the frontier entry for the specified coordinates, which are on the frontier if
+     * they are empty and neighbor a placed tile.
+     */
+    protected void refreshFrontier (int x, int y) {
+        noteFrontierChange(x, y);
+        int required = _plays.containsKey(x, y) ? 0 : computeRequiredEdges(x, y);
+        if (required == 0) _frontier.remove(x, y);
+        else _frontier.put(x, y, required);
+    }
 
-        // now make suer those two edges match
-        return play1.tile.terrain.getEdge(orient1) == play2.tile.terrain.getEdge(orient2);
+    /**
+     * Records an undoable change in our journal, if we're journaling.
+     */
+    protected void journal (int op, Object ref) {
+        if (!_journaling) return;
+        if (_undoSize + 2 > _undoOps.length) {
+            int[] nops = new int[_undoOps.length*2];
+            System.arraycopy(_undoOps, 0, nops, 0, _undoOps.length);
+            _undoOps = nops;
+        }
+        _undoOps[_undoSize++] = op;
+        _undoOps[_undoSize++] = _groups.mark();
+        _undoRefs.add(ref);
     }
 
     /**
-     * Enumerates all of the features that are in the group of which the specified feature is a
-     * member.
-     *
-     * @return true if the group is complete (has no unconnected features), false if it is not.
+     * Returns true if the supplied terrain fits in some orientation at some frontier location.
      */
-    protected boolean enumerateGroup (Placement play, Feature f, List<TileFeature> target) {
-        // create a tile-feature for this feature
-        TileFeature feat = new TileFeature(play, f);
+    protected boolean computeHasLegalPlay (Terrain terrain) {
+        for (int slot = _frontier.firstSlot(); slot >= 0; slot = _frontier.nextSlot(slot)) {
+            int required = _frontier.slotValue(slot);
+            for (Orient orient : ORIENTS) {
+                if (terrain.fits(orient, required)) return true;
+            }
+        }
+        return false;
+    }
 
-        // determine whether or not this feature is already in the group
-        if (target.contains(feat)) {
-            return true;
+    /**
+     * Notes that the frontier entry for the specified coordinates has changed (or is about to).
+     */
+    protected void noteFrontierChange (int x, int y) {
+        // when the change log fills up, start a new one; caches synced before then are rebuilt
+        if (_changeCount == MAX_FRONTIER_CHANGES) {
+            _changeBase = _frontierVersion;
+            _changeCount = 0;
         }
+        _frontierChanges[2*_changeCount] = x;
+        _frontierChanges[2*_changeCount+1] = y;
+        _changeCount++;
+        _frontierVersion++;
+    }
 
-        // otherwise add this feature to the group and process this feature's neighbors
-        target.add(feat);
+    /**
+     * Returns the legal plays for the specified terrain, bringing them up to date with the
+     * current frontier. If the cache is not too far behind, only the frontier entries that have
+     * changed since it was last brought up to date are recomputed.
+     */
+    protected PlayCache getPlayCache (Terrain terrain) {
+        PlayCache cache = _playCaches[terrain.ordinal()];
+        if (cache == null) cache = _playCaches[terrain.ordinal()] = new PlayCache();
+        if (cache.version == _frontierVersion) return cache;
+
+        int from = cache.version - _changeBase;
+        boolean rebuild = (from < 0 || _changeCount - from > _frontier.size());
+        if (cache.shared) {
+            // the current set has been handed out, so we update a copy
+            cache.locs = rebuild ? Sets.<Location>newHashSet() : Sets.newHashSet(cache.locs);
+            cache.view = Collections.unmodifiableSet(cache.locs);
+            cache.shared = false;
+        } else if (rebuild) {
+            cache.locs.clear();
+        }
 
-        // iterate over all of the possible adjacency possibilities
-        boolean complete = true;
-        for (Edge.Adjacency adj : Edge.ADJACENCIES) {
-            // if this feature doesn't have this edge, skip it
-            if ((f.edgeMask & adj.edge) == 0) {
-                continue;
+        if (rebuild) {
+            cache.orients.clear();
+            for (int slot = _frontier.firstSlot(); slot >= 0; slot = _frontier.nextSlot(slot)) {
+                updatePlayCache(cache, terrain, _frontier.slotX(slot), _frontier.slotY(slot),
+                                _frontier.slotValue(slot));
             }
+        } else {
+            for (int ii = from; ii < _changeCount; ii++) {
+                int x = _frontierChanges[2*ii], y = _frontierChanges[2*ii+1];
+                updatePlayCache(cache, terrain, x, y, _frontier.get(x, y));
+            }
+        }
+        cache.version = _frontierVersion;
+        return cache;
+    }
 
-            // look up our neighbor in this direction
-            Placement neighbor = _plays.get(play.loc.neighbor(adj.dir.rotate(play.orient.index)));
-            if (neighbor == null) {
-                // if we don't have a neighbor in a direction that we need, we're incomplete
-                complete = false;
-                continue;
+    /**
+     * Recomputes the legal orientations of the specified terrain at the specified coordinates.
+     * @param required the edges required at the coordinates, or null if they are not on the
+     * frontier.
+     */
+    protected void updatePlayCache (PlayCache cache, Terrain terrain, int x, int y,
+                                    Integer required) {
+        int mask = 0;
+        if (required != null) {
+            for (Orient orient : ORIENTS) {
+                if (terrain.fits(orient, required)) mask |= (1 << orient.index);
             }
+        }
+        if (mask == 0) {
+            if (cache.orients.remove(x, y) != null) cache.locs.remove(new Location(x, y));
+        } else if (cache.orients.put(x, y, mask) == null) {
+            cache.locs.add(new Location(x, y));
+        }
+    }
 
-            // translate the target mask into our orientation
-            int mask = Edge.translateMask(adj.edge, play.orient.index);
-            int opp_mask = Edge.translateMask(adj.opposite, play.orient.index);
+    /**
+     * Notes the claims neighboring the specified location in {@link #_nclaims}.
+     */
+    protected void fetchNeighborClaims (int x, int y) {
+        for (Orient dir : ORIENTS) {
+            _nclaims[dir.index] = _claims.get(x + dir.dx, y + dir.dy);
+        }
+    }
 
-            // obtain the index of the feature on the opposing tile
-            Feature nf = neighbor.findFeature(opp_mask);
-            if (nf == null) {
-                log.warning("Tile mismatch while propagating", "play", play, "feat", f,
-                            "neighbor", neighbor, "srcEdge", mask, "destEdge", opp_mask);
-                continue;
-            }
+    /**
+     * Returns a bit mask of the features of the specified tile that would be claimed if it were
+     * placed in the specified orientation alongside the neighbors in {@link #_nclaims}.
+     */
+    protected int computeClaimedFeatures (GameTile tile, Orient orient) {
+        int claimed = 0;
+        for (Edge.Adjacency adj : Edge.ADJACENCIES) {
+            Claim nclaim = _nclaims[adj.dir.rotate(orient.index).index];
+            if (nclaim == null) continue;
+            int fidx = tile.terrain.getFeatureIndex(Orient.NORTH, adj.edge);
+            int opp_mask = Edge.translateMask(adj.opposite, orient.index);
+            int nfidx = nclaim.play.findFeatureIndex(opp_mask);
+            if (fidx >= 0 && nfidx >= 0 && nclaim.getClaimGroup(nfidx) != 0) claimed |= (1 << fidx);
+        }
+        return claimed;
+    }
 
-            // add this feature and its neighbors to the group
-            if (!enumerateGroup(neighbor, nf, target)) {
-                // if our neighbor was incomplete, we become incomplete
-                complete = false;
+    /**
+     * Computes the edges required of a tile placed at the specified coordinates from the tiles
+     * that neighbor it. Returns zero if there are no neighboring tiles.
+     */
+    protected int computeRequiredEdges (int x, int y) {
+        int computed = 0;
+        for (Orient dir : Orient.values()) {
+            Placement neighbor = _plays.get(x+dir.dx, y+dir.dy);
+            if (neighbor != null) {
+                computed = Terrain.requireEdge(computed, dir, neighbor.tile.terrain.getEdge(
+                                                   dir.opposite().rotate(-neighbor.orient.index)));
             }
         }
-
-        return complete;
+        return computed;
     }
 
     /**
@@ -545,37 +849,28 @@ public class Logic
         int score = 0;
         boolean complete;
 
+        int node = getClaim(play).getNode(play.getFeatureIndex(f));
         switch (f.type) {
         default:
         case GRASS:
             return 0; // grass is scored later
 
         case CLOISTER:
-            // cloisters score one for every tile in the 3x3 neighborhood
-            for (Location nloc : play.loc.neighborhood()) {
-                if (_plays.containsKey(nloc)) score++;
-            }
+            // cloisters score one for every tile in the 3x3 neighborhood; the cloister's open edges
+            // are the unfilled cells in that neighborhood
+            score = 9 - _groups.getOpenEdges(node);
             complete = (score == 9);
             break;
 
         case ROAD:
         case CITY:
-            // score roads and cities by loading up the group and counting the number of tiles in it
-            List<TileFeature> flist = Lists.newArrayList();
-            complete = enumerateGroup(play, f, flist);
-
-            // filter out multiple features on the same tile, scoring only counts tiles
-            Map<Location, TileFeature> fmap = Maps.newHashMap();
-            for (TileFeature feat : flist) {
-                fmap.put(feat.play.loc, feat);
-            }
-            score = fmap.size();
+            // score roads and cities by the number of distinct tiles in their group
+            complete = _groups.isComplete(node);
+            score = _groups.getTileCount(node);
 
             // when scoring city features, we add a bonus "tile" for every tile with a shield
             if (f.type == Feature.Type.CITY) {
-                for (TileFeature feat : fmap.values()) {
-                    if (feat.play.tile.hasShield) score++;
-                }
+                score += _groups.getShieldCount(node);
             }
 
             // TODO: relegate the following to a Rules instance
@@ -592,84 +887,168 @@ public class Logic
     }
 
     /** Returns a set containing the index of every player that should earn points for the
-     * specified claim group. The player with the most piecens on a claim group gets points for the
-     * group. In the case of ties, all tying players score. */
-    protected Set<Integer> getScorers (int claimGroup) {
-        Map<Integer, Integer> piecens = Maps.newHashMap();
+     * group that contains the specified node. The player with the most piecens on a group gets
+     * points for the group. In the case of ties, all tying players score. */
+    protected Set<Integer> getScorers (int node) {
+        int scorers = _groups.getScorers(node);
+        if (scorers == 0) return Collections.emptySet();
+        Set<Integer> set = Sets.newHashSet();
+        for (int pidx = 0; scorers != 0; pidx++, scorers >>>= 1) {
+            if ((scorers & 1) != 0) set.add(pidx);
+        }
+        return set;
+    }
 
-        // count the piecens in this group by player
-        int max = 0;
-        for (Piecen p : getPiecens(claimGroup)) {
-            Integer ocount = piecens.get(p.ownerIdx);
-            if (ocount == null) ocount = 0;
-            piecens.put(p.ownerIdx, ocount+1);
-            max = Math.max(max, ocount+1);
+    /**
+     * Returns a list of all piecens in the group that contains the specified node.
+     */
+    protected List<Piecen> getPiecens (int node) {
+        List<Piecen> piecens = Lists.newArrayList();
+        for (int pnode = _groups.firstPiecen(node); pnode >= 0; pnode = _groups.nextPiecen(pnode)) {
+            piecens.add(_nodePiecens[pnode]);
         }
+        return piecens;
+    }
 
-        // now delete anyone who's score is less than the max
-        for (Iterator<Integer> iter = piecens.values().iterator(); iter.hasNext(); ) {
-            if (iter.next() < max) iter.remove();
+    /**
+     * Returns the index of the cloister feature on the supplied placement's tile, or -1.
+     */
+    protected static int getCloisterIndex (Placement play) {
+        Feature[] features = play.tile.terrain.features;
+        for (int ii = 0; ii < features.length; ii++) {
+            if (features[ii].type == Feature.Type.CLOISTER) return ii;
         }
+        return -1;
+    }
 
-        return piecens.keySet();
+    /** Adds or removes the specified placement from each rotation's hash. */
+    protected void toggleHash (Placement play) {
+        for (int ii = 0; ii < _hashes.length; ii++) _hashes[ii] ^= hash(play, ii);
+    }
+
+    /** Adds or removes the specified piecen from each rotation's hash. */
+    protected void toggleHash (Piecen piecen) {
+        for (int ii = 0; ii < _hashes.length; ii++) _hashes[ii] ^= hash(piecen, ii);
+    }
+
+    /** Returns the {@link BoardMap} key of the supplied location rotated by the specified number
+     * of clockwise quarter turns (see {@link Location#rotate}). */
+    protected static int rotatedKey (Location loc, int ticks) {
+        switch (ticks & 3) {
+        case 1: return BoardMap.key(-loc.y, loc.x);
+        case 2: return BoardMap.key(-loc.x, -loc.y);
+        case 3: return BoardMap.key(loc.y, -loc.x);
+        default: return BoardMap.key(loc.x, loc.y);
+        }
     }
 
     /**
-     * Returns a list of all piecens with the specified claim group.
+     * Scrambles the bits of the supplied value (this is the SplitMix64 finalizer). Because the
+     * board is unbounded, this stands in for the table of random values that a Zobrist hash
+     * would normally index.
      */
-    protected Iterable<Piecen> getPiecens (final int claimGroup) {
-        return Iterables.filter(_piecens.values(), new Predicate<Piecen>() {
-            public boolean apply (Piecen p) {
-                return _piecenGroups.get(p.loc) == claimGroup;
+    protected static long mix (long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Creates {@link #ORIENT_LISTS}. */
+    protected static List<List<Orient>> createOrientLists () {
+        List<List<Orient>> lists = Lists.newArrayList();
+        for (int mask = 0; mask < (1 << ORIENTS.length); mask++) {
+            List<Orient> orients = Lists.newArrayList();
+            for (Orient orient : ORIENTS) {
+                if ((mask & (1 << orient.index)) != 0) orients.add(orient);
             }
-        });
+            lists.add(Collections.unmodifiableList(orients));
+        }
+        return lists;
     }
 
+    /** The Zobrist hash of the board in each of its four rotations, see {@link #getHash}. */
+    protected final long[] _hashes = new long[ORIENTS.length];
+
     /** Used to generate claim group values. */
     protected int _claimGroupCounter;
 
     /** A mapping of currently placed tiles by placement location. */
-    protected final Map<Location, Placement> _plays = Maps.newHashMap();
+    protected final BoardMap<Placement> _plays = new BoardMap<Placement>();
 
-    /** A mapping of currently placed piecens by placement location. */
-    protected final Map<Location, Piecen> _piecens = Maps.newHashMap();
+    /** The empty locations that neighbor a placed tile, mapped to the edges required of a tile
+     * placed there (packed as described in {@link Terrain#fits}). */
+    protected final BoardMap<Integer> _frontier = new BoardMap<Integer>();
+
+    /** The legal plays of each terrain (by ordinal), created as needed. */
+    protected final PlayCache[] _playCaches = new PlayCache[TERRAINS];
+
+    /** The coordinates of the frontier entries changed since {@link #_changeBase}, as x, y
+     * pairs. */
+    protected final int[] _frontierChanges = new int[2*MAX_FRONTIER_CHANGES];
+
+    /** The number of changes in {@link #_frontierChanges}. */
+    protected int _changeCount;
 
-    /** Tracks the claim group assigned to every piecen on the board. */
-    protected final Map<Location, Integer> _piecenGroups = Maps.newHashMap();
+    /** The frontier version before the first change in {@link #_frontierChanges}. */
+    protected int _changeBase = 1;
+
+    /** Incremented whenever {@link #_frontier} changes. This starts at one so that the zeroed
+     * {@link #_playableVersions} are initially stale. */
+    protected int _frontierVersion = 1;
+
+    /** Whether each terrain (by ordinal) has a legal play, as of the frontier version noted for
+     * it in {@link #_playableVersions}. */
+    protected final boolean[] _playable = new boolean[TERRAINS];
+    protected final int[] _playableVersions = new int[TERRAINS];
+
+    /** A mapping of currently placed piecens by placement location. */
+    protected final BoardMap<Piecen> _piecens = new BoardMap<Piecen>();
 
     /** Maintains a mapping of claim metadata by location. */
-    protected Map<Location, Claim> _claims = Maps.newHashMap();
+    protected final BoardMap<Claim> _claims = new BoardMap<Claim>();
 
-    /** Used to keep track of actual features on placed tiles. */
-    protected static final class TileFeature {
-        /** The placement that contains the feature. */
-        public final Placement play;
+    /** Tracks the groups of connected features and the claim group assigned to each. */
+    protected final ClaimGroups _groups = new ClaimGroups();
 
-        /** The feature of the tile. */
-        public final Feature feature;
+    /** The piecen placed on each claim group node, if any. */
+    protected Piecen[] _nodePiecens = new Piecen[64];
 
-        /** Constructs a new tile feature. */
-        public TileFeature (Placement play, Feature feature) {
-            this.play = play;
-            this.feature = feature;
-        }
+    /** The claims neighboring the location for which {@link #computeMoves} is generating. */
+    protected final Claim[] _nclaims = new Claim[4];
 
-        @Override public boolean equals (Object other) {
-            TileFeature feat = (TileFeature)other;
-            return (feat.play.equals(play) && feat.feature.equals(feature));
-        }
+    /** Whether or not changes are being journaled for {@link #undo}. */
+    protected boolean _journaling;
 
-        @Override public String toString () {
-            return Logger.format("play", play, "feat", feature);
-        }
-    }
+    /** The journaled changes, as pairs of operation and {@link ClaimGroups#mark}. */
+    protected int[] _undoOps = new int[64];
+
+    /** The number of ints in use in {@link #_undoOps}. */
+    protected int _undoSize;
+
+    /** The placement or piecen involved in each journaled change. */
+    protected final List<Object> _undoRefs = Lists.newArrayList();
+
+    /** Journaled operation types. */
+    protected static final int UNDO_PLACEMENT = 0, UNDO_ADD_PIECEN = 1, UNDO_CLEAR_PIECEN = 2;
+
+    /** The orientations, by index. */
+    protected static final Orient[] ORIENTS = Orient.values();
+
+    /** The number of distinct terrains. */
+    protected static final int TERRAINS = Terrain.values().length;
+
+    /** Distinguish the hashes of placements from those of piecens. */
+    protected static final long PLACEMENT_SALT = 0x5851F42D4C957F2DL;
+    protected static final long PIECEN_SALT = 0x14057B7EF767814FL;
+
+    /** The number of frontier changes logged before the log is restarted. */
+    protected static final int MAX_FRONTIER_CHANGES = 256;
 
-    /** Used to iterate through a tile's neighbors. */
-    protected static final Location[] NEIGHBORS = {
-        new Location(-1, -1), new Location(-1, +1), new Location(+1, +1), new Location(+1, -1)
-    };
+    /** Unmodifiable lists of the orientations in each bit mask of orientations (by index). */
+    protected static final List<List<Orient>> ORIENT_LISTS = createOrientLists();
 
-    /** Features that must be checked for completion via graph traversal. */
+    /** Features that can be completed, and thus scored before the end of the game: the
+     * features for which scores are computed from their claim groups' open edge counts. */
     protected static final Set<Feature.Type> COMPLETABLES = ImmutableSet.of(
         Feature.Type.ROAD, Feature.Type.CITY, Feature.Type.CLOISTER);
 }
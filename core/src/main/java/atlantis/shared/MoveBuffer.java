@@ -0,0 +1,135 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.shared;
+
+/**
+ * A reusable buffer of the legal moves for a single tile, as generated by {@link
+ * Logic#computeMoves}. Each move is a (location, orientation, feature-or-none) triple packed into
+ * a few ints, so that generating moves allocates nothing once the buffer has grown to size.
+ *
+ * <p>Moves are generated location by location and, for each location, orientation by
+ * orientation. The piecen-less move for a given location and orientation always immediately
+ * precedes the moves that place a piecen on one of that placement's unclaimed features.</p>
+ */
+public class MoveBuffer
+{
+    /** Returns the tile for which these moves were generated. */
+    public GameTile tile () {
+        return _tile;
+    }
+
+    /** Returns the number of moves in this buffer. */
+    public int size () {
+        return _size;
+    }
+
+    /** Returns the number of moves in this buffer that place no piecen (i.e. the number of
+     * distinct legal placements of the tile). */
+    public int placements () {
+        return _placements;
+    }
+
+    /** Returns the index of the move that makes the {@code nth} (from zero) legal placement and
+     * places no piecen. */
+    public int placementIndex (int nth) {
+        for (int ii = 0, seen = 0; ii < _size; ii++) {
+            if (featureIdx(ii) < 0 && seen++ == nth) return ii;
+        }
+        throw new IndexOutOfBoundsException("No placement " + nth + " of " + _placements);
+    }
+
+    /** Returns the number of moves that immediately follow the specified piecen-less move and
+     * make the same placement with a piecen. */
+    public int piecenCount (int idx) {
+        int count = 0;
+        while (idx + count + 1 < _size && featureIdx(idx + count + 1) >= 0) count++;
+        return count;
+    }
+
+    /** Returns the x coordinate of the specified move. */
+    public int x (int idx) {
+        return _data[idx*STRIDE];
+    }
+
+    /** Returns the y coordinate of the specified move. */
+    public int y (int idx) {
+        return _data[idx*STRIDE+1];
+    }
+
+    /** Returns the orientation of the specified move. */
+    public Orient orient (int idx) {
+        return ORIENTS[_data[idx*STRIDE+2] >> 8];
+    }
+
+    /** Returns the index of the feature on which the specified move places a piecen, or -1 if
+     * the move places no piecen. */
+    public int featureIdx (int idx) {
+        return (_data[idx*STRIDE+2] & 0xFF) - 1;
+    }
+
+    /**
+     * Returns the index of the specified move, or -1 if it is not in this buffer.
+     * @param featureIdx the index of the feature on which a piecen is placed, or -1.
+     */
+    public int indexOf (Location loc, Orient orient, int featureIdx) {
+        int packed = (orient.index << 8) | (featureIdx+1);
+        for (int ii = 0, off = 0; ii < _size; ii++, off += STRIDE) {
+            if (_data[off] == loc.x && _data[off+1] == loc.y && _data[off+2] == packed) return ii;
+        }
+        return -1;
+    }
+
+    /** Creates the placement made by the specified move. */
+    public Placement toPlacement (int idx) {
+        return new Placement(_tile, orient(idx), new Location(x(idx), y(idx)));
+    }
+
+    /** Creates the piecen placed by the specified move for the specified player, or returns null
+     * if the move places no piecen. */
+    public Piecen toPiecen (int idx, int ownerIdx) {
+        int fidx = featureIdx(idx);
+        return (fidx < 0) ? null : new Piecen(ownerIdx, new Location(x(idx), y(idx)), fidx);
+    }
+
+    /** Clears this buffer in preparation for generating moves for the supplied tile. */
+    protected void reset (GameTile tile) {
+        _tile = tile;
+        _size = 0;
+        _placements = 0;
+    }
+
+    /** Appends a move to this buffer. */
+    protected void add (int x, int y, Orient orient, int featureIdx) {
+        int off = _size*STRIDE;
+        if (off + STRIDE > _data.length) {
+            int[] data = new int[_data.length*2];
+            System.arraycopy(_data, 0, data, 0, off);
+            _data = data;
+        }
+        _data[off] = x;
+        _data[off+1] = y;
+        _data[off+2] = (orient.index << 8) | (featureIdx+1);
+        _size++;
+        if (featureIdx < 0) _placements++;
+    }
+
+    /** The tile for which our moves were generated. */
+    protected GameTile _tile;
+
+    /** Our moves, packed as x, y and (orient index << 8 | feature index + 1). */
+    protected int[] _data = new int[64*STRIDE];
+
+    /** The number of moves in the buffer. */
+    protected int _size;
+
+    /** The number of moves in the buffer that place no piecen. */
+    protected int _placements;
+
+    /** The number of ints used by each move. */
+    protected static final int STRIDE = 3;
+
+    /** The orientations, by index. */
+    protected static final Orient[] ORIENTS = Orient.values();
+}
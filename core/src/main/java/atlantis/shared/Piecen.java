@@ -43,6 +43,15 @@ public class Piecen implements Streamable
         this.featureIdx = featureIdx;
     }
 
+    /**
+     * Returns this piecen as it would be were the whole board rotated about the origin by the
+     * specified number of clockwise quarter turns. Feature indices are relative to the tile, so
+     * only the location changes.
+     */
+    public Piecen rotate (int ticks) {
+        return new Piecen(ownerIdx, loc.rotate(ticks), featureIdx);
+    }
+
     @Override
     public int hashCode () {
         return loc.hashCode();
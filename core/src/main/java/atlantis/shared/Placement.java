@@ -34,6 +34,14 @@ public class Placement implements Streamable
         this.loc = loc;
     }
 
+    /**
+     * Returns this placement as it would be were the whole board rotated about the origin by the
+     * specified number of clockwise quarter turns (see {@link Location#rotate}).
+     */
+    public Placement rotate (int ticks) {
+        return new Placement(tile, orient.rotate(ticks), loc.rotate(ticks));
+    }
+
     /**
      * Returns the feature at the specified index on this tile.
      */
@@ -57,12 +65,33 @@ public class Placement implements Streamable
      * @param edgeMask the desired edge mask, in canonical orientation.
      */
     public Feature findFeature (int edgeMask) {
+        int fidx = findFeatureIndex(edgeMask);
+        return (fidx < 0) ? null : tile.terrain.features[fidx];
+    }
+
+    /**
+     * Returns the index of the feature that matches the supplied edge mask or -1 if no feature
+     * matches.
+     * @param edgeMask the desired edge mask, in canonical orientation.
+     */
+    public int findFeatureIndex (int edgeMask) {
+        // single edge masks (the common case) are looked up directly
+        if (edgeMask > 0 && edgeMask <= Edge.ALL_F && (edgeMask & (edgeMask-1)) == 0) {
+            return tile.terrain.getFeatureIndex(orient, edgeMask);
+        }
+
         // translate the feature mask into our orientation
         edgeMask = Edge.translateMask(edgeMask, -orient.index);
-        for (Feature f : tile.terrain.features) {
-            if ((f.edgeMask & edgeMask) != 0) return f;
+        Feature[] features = tile.terrain.features;
+        for (int ii = 0; ii < features.length; ii++) {
+            if ((features[ii].edgeMask & edgeMask) != 0) return ii;
         }
-        return null;
+        return -1;
+    }
+
+    @Override
+    public int hashCode () {
+        return loc.hashCode();
     }
 
     @Override
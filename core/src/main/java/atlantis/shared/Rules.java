@@ -16,6 +16,9 @@ public class Rules
     /** The tile used to start a game. */
     public static final GameTile STARTER = new GameTile(Terrain.CITY_ONE_ROAD_STRAIGHT, false);
 
+    /** The maximum number of players in a game (one for each piecen color). */
+    public static final int MAX_PLAYERS = 6;
+
     /** The number of piecens granted to each player at the start of the game. */
     public static final int STARTING_PIECENS = 5;
 
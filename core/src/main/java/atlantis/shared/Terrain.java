@@ -154,17 +154,90 @@ public enum Terrain
     /** The features on this terrain tile. */
     public final Feature[] features;
 
+    /** The number of bits used to encode an edge in an edge signature. */
+    public static final int EDGE_BITS = 2;
+
+    /**
+     * Adds (or replaces) the requirement that a tile have the specified edge in the specified
+     * direction to the supplied set of packed edge requirements (see {@link #fits}).
+     */
+    public static int requireEdge (int required, Orient dir, Edge edge) {
+        int shift = dir.index * EDGE_BITS;
+        return (required & ~(EDGE_MASK << shift)) | ((edge.ordinal() + 1) << shift);
+    }
+
     /** Returns the edge of this tile in the specified direction. */
     public Edge getEdge (Orient orient) {
         return _edges[orient.index];
     }
 
+    /**
+     * Returns the edges of this tile, when placed in the specified orientation, packed into an
+     * int. The edge facing each direction is encoded (as its ordinal plus one) in the {@link
+     * #EDGE_BITS} bits at {@code dir.index * EDGE_BITS}.
+     */
+    public int getEdgeSignature (Orient orient) {
+        return _signatures[orient.index];
+    }
+
+    /**
+     * Returns true if this tile, when placed in the specified orientation, has all of the supplied
+     * packed edge requirements (created via {@link #requireEdge}). Directions with no requirement
+     * match any edge.
+     */
+    public boolean fits (Orient orient, int required) {
+        // expand each non-zero requirement into a full mask for its direction
+        int care = (required | (required >>> 1)) & CARE_BITS;
+        return (_signatures[orient.index] & (care | (care << 1))) == required;
+    }
+
+    /**
+     * Returns the index of the feature that has the specified edge when this tile is placed in
+     * the specified orientation, or -1 if no feature has that edge.
+     * @param edgeMask a single edge mask, in canonical orientation.
+     */
+    public int getFeatureIndex (Orient orient, int edgeMask) {
+        return _featureIdxs[orient.index * EDGE_COUNT + Integer.numberOfTrailingZeros(edgeMask)];
+    }
+
     Terrain (int tileIdx, Edge north, Edge east, Edge south, Edge west, Feature... features) {
         this.tileIdx = tileIdx;
         this.features = features;
         _edges = new Edge[] { north, east, south, west };
+        for (Orient orient : Orient.values()) {
+            int signature = 0;
+            for (Orient dir : Orient.values()) {
+                signature = requireEdge(signature, dir, getEdge(dir.rotate(-orient.index)));
+            }
+            _signatures[orient.index] = signature;
+
+            for (int bit = 0; bit < EDGE_COUNT; bit++) {
+                // translate the edge into the tile's natural orientation and find its feature
+                int mask = Edge.translateMask(1 << bit, -orient.index), fidx = -1;
+                for (int ii = 0; ii < features.length && fidx < 0; ii++) {
+                    if ((features[ii].edgeMask & mask) != 0) fidx = ii;
+                }
+                _featureIdxs[orient.index * EDGE_COUNT + bit] = fidx;
+            }
+        }
     }
 
     /** The edges of this terrain tile. */
     protected final Edge[] _edges;
+
+    /** Our packed edge signatures, indexed by orientation. */
+    protected final int[] _signatures = new int[4];
+
+    /** The index of the feature with each (canonical) edge, indexed by orientation and the
+     * position of the edge's bit. */
+    protected final int[] _featureIdxs = new int[4 * EDGE_COUNT];
+
+    /** The number of distinct connecting edges (see {@link Edge#NORTH_F} et al). */
+    protected static final int EDGE_COUNT = 12;
+
+    /** Masks a single packed edge. */
+    protected static final int EDGE_MASK = (1 << EDGE_BITS) - 1;
+
+    /** The low bit of each packed edge. */
+    protected static final int CARE_BITS = 0x55;
 }
@@ -0,0 +1,531 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.sim;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+
+import com.threerings.nexus.util.Callback;
+
+import tripleplay.util.Randoms;
+
+import atlantis.shared.GameObject;
+import atlantis.shared.GameTile;
+import atlantis.shared.Logic;
+import atlantis.shared.MoveBuffer;
+import atlantis.shared.Piecen;
+import atlantis.shared.Placement;
+import atlantis.shared.Rules;
+
+/**
+ * Chooses moves via Monte Carlo tree search. Each legal move for the tile in hand (every
+ * location, orientation and piecen feature, or no piecen) is a child of the search root, and
+ * children are selected for evaluation via UCB1. Below the root the tiles are drawn at random
+ * from those still in the bag (the standard tiles less those already played), so positions are
+ * evaluated by random playouts rather than further expansion of the tree.
+ *
+ * <p>A playout applies the selected move and then plays random moves for every player for up to
+ * {@link #horizon} turns (or until the bag is empty), scoring completed features as it goes. The
+ * position is then scored as if the game had ended, and the playout counts as a win if the
+ * searching player leads, half a win if they are tied for the lead, and a loss otherwise.</p>
+ *
+ * <p>Playouts are made on a private, journaled {@link Logic} and undone afterwards, so searching
+ * does not allocate a new board per playout.</p>
+ *
+ * <p>The search may be split across an executor (root parallelization): each task searches
+ * independently with its own copy of the board, its own random seed and an equal share of the
+ * iterations, and their statistics are summed (in task order) to choose the move. The game state
+ * is captured once per move, and shared by the tasks, which each build their board from it on
+ * the executor. The number of tasks caps the number of threads a single search occupies. With no
+ * time budget, the chosen move is the same for a given seed regardless of how the tasks are
+ * scheduled.</p>
+ *
+ * <p>A search may also share its statistics through a {@link TranspositionTable}, keyed on the
+ * hash of the canonical rotation of the position each move leads to (and the searching player),
+ * so positions that differ only by a rotation of the whole board share statistics. The tasks of
+ * a search then select moves using each other's results, and later searches that reach the same
+ * positions (in this game or another sharing the table) start from the statistics already
+ * gathered. The chosen move is then no longer deterministic.</p>
+ */
+public class MctsPolicy implements Policy
+{
+    /** The maximum number of playouts made per move. */
+    public final int iterations;
+
+    /** The maximum time spent searching per move, in milliseconds (0 for no limit). */
+    public final long millis;
+
+    /** The maximum number of turns played out beyond the move being evaluated. */
+    public final int horizon;
+
+    /**
+     * Creates a policy that searches until either budget is exhausted.
+     *
+     * @param iterations the maximum number of playouts per move.
+     * @param millis the maximum time to search per move, or 0 to search until the iteration
+     * budget is exhausted (which makes the search deterministic for a given seed).
+     * @param horizon the maximum number of turns played out beyond the move being evaluated.
+     */
+    public MctsPolicy (Randoms rands, int iterations, long millis, int horizon) {
+        this(rands, iterations, millis, horizon, null, 1);
+    }
+
+    /**
+     * Creates a policy that splits each search into the specified number of tasks, which are run
+     * on the supplied executor.
+     */
+    public MctsPolicy (Randoms rands, int iterations, long millis, int horizon,
+                       ExecutorService exec, int tasks) {
+        this(rands, iterations, millis, horizon, exec, tasks, null);
+    }
+
+    /**
+     * Creates a policy that splits each search into tasks, as above, which share their statistics
+     * (with each other and with other searches) via the supplied table.
+     */
+    public MctsPolicy (Randoms rands, int iterations, long millis, int horizon,
+                       ExecutorService exec, int tasks, TranspositionTable table) {
+        _rands = rands;
+        this.iterations = iterations;
+        this.millis = millis;
+        this.horizon = horizon;
+        _exec = exec;
+        _tasks = (exec == null) ? 1 : Math.max(tasks, 1);
+        _table = table;
+    }
+
+    // from interface Policy
+    public Move choose (GameObject gobj, Logic logic, int playerIdx, GameTile tile) {
+        try {
+            return prepare(gobj, logic, playerIdx, tile).call();
+        } catch (RuntimeException re) {
+            throw re;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Captures everything needed from the supplied game state to choose a move and returns a
+     * callable that performs the search. The game state is not referenced once this method
+     * returns, so the search may run on another thread while the game carries on. The callable
+     * waits for the search's tasks to complete, so it must not be called on a thread of this
+     * policy's executor (see {@link #start}).
+     */
+    public Callable<Move> prepare (GameObject gobj, Logic logic, int playerIdx, GameTile tile) {
+        final Snapshot snap = snapshot(gobj, logic, playerIdx, tile);
+        if (snap.moves.size() == 1) {
+            return new Callable<Move>() {
+                public Move call () {
+                    return snap.moves.get(0);
+                }
+            };
+        }
+
+        final List<Search> searches = createSearches(snap);
+        return new Callable<Move>() {
+            public Move call () throws Exception {
+                long deadline = (millis > 0) ? System.currentTimeMillis() + millis : Long.MAX_VALUE;
+                for (Search search : searches) search.deadline = deadline;
+                if (searches.size() == 1) searches.get(0).call();
+                else for (Future<Void> result : _exec.invokeAll(searches)) result.get();
+                return chooseMove(snap, searches);
+            }
+        };
+    }
+
+    /**
+     * Captures the supplied game state, as {@link #prepare} does, and starts searching for a move
+     * on this policy's executor. Nothing waits on the search: the chosen move (or the failure of
+     * the search) is reported to the callback by whichever task finishes last, on its thread. If
+     * there is only one legal move, the callback is notified immediately.
+     */
+    public void start (GameObject gobj, Logic logic, int playerIdx, GameTile tile,
+                       final Callback<Move> callback) {
+        final Snapshot snap = snapshot(gobj, logic, playerIdx, tile);
+        if (snap.moves.size() == 1) {
+            callback.onSuccess(snap.moves.get(0));
+            return;
+        }
+
+        final List<Search> searches = createSearches(snap);
+        final AtomicInteger remaining = new AtomicInteger(searches.size());
+        final AtomicBoolean failed = new AtomicBoolean();
+        long deadline = (millis > 0) ? System.currentTimeMillis() + millis : Long.MAX_VALUE;
+        for (final Search search : searches) {
+            search.deadline = deadline;
+            Runnable task = new Runnable() {
+                public void run () {
+                    try {
+                        search.call();
+                    } catch (Exception e) {
+                        if (!failed.getAndSet(true)) callback.onFailure(e);
+                    }
+                    // the last task to finish chooses the move (if none of them failed)
+                    if (remaining.decrementAndGet() == 0 && !failed.get()) {
+                        callback.onSuccess(chooseMove(snap, searches));
+                    }
+                }
+            };
+            if (_exec == null) task.run();
+            else _exec.execute(task);
+        }
+    }
+
+    /**
+     * Captures the legal moves for the supplied tile, and the game state from which to play them
+     * out.
+     */
+    protected Snapshot snapshot (GameObject gobj, Logic logic, int playerIdx, GameTile tile) {
+        List<Move> moves = computeMoves(logic, tile, playerIdx, gobj.piecensInPlay(playerIdx));
+        // key each move on the position it leads to, if we're sharing statistics
+        long[] keys = null;
+        if (_table != null && moves.size() > 1) {
+            long playerKey = (playerIdx + 1) * PLAYER_SALT;
+            keys = new long[moves.size()];
+            for (int ii = 0; ii < keys.length; ii++) {
+                keys[ii] = canonicalKey(logic, moves.get(ii)) ^ playerKey;
+            }
+        }
+        return new Snapshot(gobj, playerIdx, tile, moves, keys);
+    }
+
+    /**
+     * Creates the tasks that search from the supplied snapshot, each with its own seed and share
+     * of the iterations.
+     */
+    protected List<Search> createSearches (Snapshot snap) {
+        List<Search> searches = Lists.newArrayList();
+        for (int ii = 0; ii < _tasks; ii++) {
+            int share = iterations / _tasks + (ii < iterations % _tasks ? 1 : 0);
+            Randoms rands = Randoms.with(new Random(_rands.getInt(Integer.MAX_VALUE)));
+            searches.add(new Search(snap, share, rands));
+        }
+        return searches;
+    }
+
+    /**
+     * Sums the statistics of the supplied (completed) searches, and returns the most visited
+     * move.
+     */
+    protected Move chooseMove (Snapshot snap, List<Search> searches) {
+        int[] visits = new int[snap.moves.size()];
+        for (Search search : searches) {
+            for (int ii = 0; ii < visits.length; ii++) visits[ii] += search.visits[ii];
+        }
+        // the table may also know of visits from earlier searches
+        if (snap.keys != null) {
+            for (int ii = 0; ii < visits.length; ii++) {
+                visits[ii] = Math.max(visits[ii],
+                                      TranspositionTable.visits(_table.probe(snap.keys[ii])));
+            }
+        }
+        int best = 0;
+        for (int ii = 1; ii < visits.length; ii++) {
+            if (visits[ii] > visits[best]) best = ii;
+        }
+        return snap.moves.get(best);
+    }
+
+    /**
+     * Returns the hash of the canonical rotation (see {@link Logic#getCanonicalRotation}) of the
+     * position that the supplied move leads to, so that moves leading to positions that differ
+     * only by a rotation of the whole board share their statistics.
+     */
+    protected static long canonicalKey (Logic logic, Move move) {
+        long key = Long.MAX_VALUE;
+        for (int ii = 0; ii < 4; ii++) {
+            long rkey = logic.getHash(ii) ^ Logic.hash(move.play, ii) ^
+                (move.piecen == null ? 0 : Logic.hash(move.piecen, ii));
+            key = Math.min(key, rkey);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the index of the move to evaluate next: an unvisited move, if any remain, or the
+     * move with the highest upper confidence bound.
+     */
+    protected static int select (int[] visits, double[] wins, int total) {
+        int best = -1;
+        double bestBound = Double.NEGATIVE_INFINITY, logTotal = Math.log(total);
+        for (int ii = 0; ii < visits.length; ii++) {
+            if (visits[ii] == 0) return ii;
+            double bound = wins[ii] / visits[ii] + EXPLORATION * Math.sqrt(logTotal / visits[ii]);
+            if (bound > bestBound) {
+                bestBound = bound;
+                best = ii;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns every legal move for the supplied tile (see {@link Logic#computeMoves}).
+     */
+    protected static List<Move> computeMoves (Logic logic, GameTile tile, int playerIdx,
+                                              int piecensInPlay) {
+        MoveBuffer buffer = new MoveBuffer();
+        List<Move> moves = Lists.newArrayList();
+        Placement play = null;
+        for (int ii = 0, ll = logic.computeMoves(tile, piecensInPlay, buffer); ii < ll; ii++) {
+            // the piecen-less move precedes those making the same placement with a piecen
+            if (buffer.featureIdx(ii) < 0) play = buffer.toPlacement(ii);
+            moves.add(new Move(play, buffer.toPiecen(ii, playerIdx)));
+        }
+        return moves;
+    }
+
+    /** The game state from which a move is chosen, which is shared by the tasks of a search. */
+    protected static class Snapshot
+    {
+        /** The searching player. */
+        public final int playerIdx;
+
+        /** The legal moves for the tile. */
+        public final List<Move> moves;
+
+        /** The transposition table key for each move, or null if we're not using the table. */
+        public final long[] keys;
+
+        /** The plays and piecens on the board. */
+        public final Placement[] plays;
+        public final Piecen[] piecens;
+
+        /** The players' scores and piecens in play. */
+        public final int[] scores, piecensInPlay;
+
+        /** The tiles remaining in the bag: the standard tiles less those played and in hand. */
+        public final GameTile[] bag;
+
+        public Snapshot (GameObject gobj, int playerIdx, GameTile tile, List<Move> moves,
+                         long[] keys) {
+            this.playerIdx = playerIdx;
+            this.moves = moves;
+            this.keys = keys;
+            plays = Iterables.toArray(gobj.plays, Placement.class);
+            piecens = Iterables.toArray(gobj.piecens, Piecen.class);
+
+            int players = gobj.players.length;
+            scores = new int[players];
+            piecensInPlay = new int[players];
+            for (int ii = 0; ii < players; ii++) {
+                scores[ii] = gobj.scores.get(ii);
+                piecensInPlay[ii] = gobj.piecensInPlay(ii);
+            }
+
+            Multiset<GameTile> used = HashMultiset.create();
+            for (Placement play : plays) used.add(play.tile);
+            used.add(tile);
+            List<GameTile> bag = Lists.newArrayList();
+            for (GameTile btile : Rules.standardTiles()) {
+                if (!used.remove(btile)) bag.add(btile);
+            }
+            this.bag = bag.toArray(new GameTile[bag.size()]);
+        }
+    }
+
+    /** The state of a search (or one task of a parallel search) for a single move. */
+    protected class Search implements Callable<Void>
+    {
+        /** The number of times each move has been played out. */
+        public final int[] visits;
+
+        /** The total result of the playouts of each move. */
+        public final double[] wins;
+
+        /** The time at which the search must end. */
+        public long deadline = Long.MAX_VALUE;
+
+        public Search (Snapshot snap, int iterations, Randoms rands) {
+            _moves = snap.moves;
+            _keys = snap.keys;
+            _iterations = iterations;
+            _rands = rands;
+            visits = new int[_moves.size()];
+            wins = new double[_moves.size()];
+            _playerIdx = snap.playerIdx;
+            _snap = snap;
+            _scores = snap.scores;
+            _piecens = snap.piecensInPlay;
+            _pscores = new int[_scores.length];
+            _ppiecens = new int[_piecens.length];
+        }
+
+        // from interface Callable
+        public Void call () {
+            // build our board from the snapshot here, rather than on the thread that captured it
+            for (Placement play : _snap.plays) _logic.addPlacement(play);
+            for (Piecen piecen : _snap.piecens) _logic.addPiecen(piecen);
+            _logic.setJournaling(true);
+            // we shuffle the bag as we draw from it, so we need our own copy
+            _bag = _snap.bag.clone();
+
+            for (int ii = 0; ii < _iterations; ii++) {
+                // check the clock periodically, but always visit every move at least once
+                if ((ii & 15) == 0 && ii >= _moves.size() &&
+                    System.currentTimeMillis() > deadline) break;
+                int midx = (_keys == null) ? select(visits, wins, ii) : selectShared();
+                double result = playout(_moves.get(midx));
+                wins[midx] += result;
+                visits[midx]++;
+                if (_keys != null) _table.add(_keys[midx], 1, result);
+            }
+            return null;
+        }
+
+        /**
+         * Selects the move to evaluate next using the statistics in the transposition table, or
+         * our own statistics for any move for which the table knows of fewer visits.
+         */
+        protected int selectShared () {
+            if (_svisits == null) {
+                _svisits = new int[visits.length];
+                _swins = new double[visits.length];
+            }
+            int total = 0;
+            for (int ii = 0; ii < visits.length; ii++) {
+                long entry = _table.probe(_keys[ii]);
+                int tvisits = TranspositionTable.visits(entry);
+                if (tvisits >= visits[ii]) {
+                    _svisits[ii] = tvisits;
+                    _swins[ii] = TranspositionTable.wins(entry);
+                } else {
+                    _svisits[ii] = visits[ii];
+                    _swins[ii] = wins[ii];
+                }
+                total += _svisits[ii];
+            }
+            return select(_svisits, _swins, Math.max(total, 1));
+        }
+
+        /**
+         * Plays out a game that starts with the supplied move, undoes it, and returns 1 if the
+         * searching player won, 0.5 if they tied for the lead and 0 if they lost.
+         */
+        public double playout (Move move) {
+            System.arraycopy(_scores, 0, _pscores, 0, _scores.length);
+            System.arraycopy(_piecens, 0, _ppiecens, 0, _piecens.length);
+            int players = _scores.length, changes = apply(move.play, move.piecen);
+
+            // draw tiles at random from the bag (shuffling as we go) and play them at random
+            int drawn = 0, turnHolder = _playerIdx;
+            for (int turn = 0; turn < horizon && drawn < _bag.length; turn++) {
+                int pick = drawn + _rands.getInt(_bag.length - drawn);
+                GameTile tile = _bag[pick];
+                _bag[pick] = _bag[drawn];
+                _bag[drawn++] = tile;
+
+                int next = (turnHolder + 1) % players;
+                if (_logic.computeMoves(tile, _ppiecens[next], _buffer) == 0) {
+                    continue; // unplayable tiles are discarded
+                }
+                turnHolder = next;
+                int midx = _buffer.placementIndex(_rands.getInt(_buffer.placements()));
+                changes += apply(_buffer.toPlacement(midx), choosePiecen(midx, turnHolder));
+            }
+
+            // score the position as if the game ended here
+            for (Logic.FeatureScore score : _logic.computeFinalScores()) {
+                if (!score.complete) addScore(score);
+            }
+            for (Logic.FeatureScore score : _logic.computeFarmScores()) addScore(score);
+
+            for (int ii = 0; ii < changes; ii++) _logic.undo();
+
+            int mine = _pscores[_playerIdx], best = Integer.MIN_VALUE;
+            for (int ii = 0; ii < players; ii++) {
+                if (ii != _playerIdx) best = Math.max(best, _pscores[ii]);
+            }
+            return (mine > best) ? 1 : (mine == best ? 0.5 : 0);
+        }
+
+        /**
+         * Chooses a piecen (or null) to accompany the specified placement move in {@link
+         * #_buffer}: half the time, if the player has one available, on a random unclaimed
+         * feature.
+         */
+        protected Piecen choosePiecen (int midx, int playerIdx) {
+            int options = _buffer.piecenCount(midx);
+            if (options == 0 || _rands.getInt(2) == 0) return null;
+            return _buffer.toPiecen(midx + 1 + _rands.getInt(options), playerIdx);
+        }
+
+        /**
+         * Applies a move to our logic, scores any features it completes and reclaims their
+         * piecens.
+         *
+         * @return the number of journaled changes made to the logic.
+         */
+        protected int apply (Placement play, Piecen piecen) {
+            int changes = 1;
+            _logic.addPlacement(play);
+            if (piecen != null) {
+                _logic.addPiecen(piecen);
+                _ppiecens[piecen.ownerIdx]++;
+                changes++;
+            }
+            for (Logic.FeatureScore score : _logic.computeScores(play)) {
+                if (!score.complete) continue;
+                addScore(score);
+                for (Piecen p : score.piecens) {
+                    _logic.clearPiecen(p);
+                    _ppiecens[p.ownerIdx]--;
+                    changes++;
+                }
+            }
+            return changes;
+        }
+
+        protected void addScore (Logic.FeatureScore score) {
+            for (int pidx : score.scorers) _pscores[pidx] += score.score;
+        }
+
+        protected final List<Move> _moves;
+
+        /** The transposition table key for each move, or null if we're not using the table. */
+        protected final long[] _keys;
+
+        /** The shared statistics for each move, used by {@link #selectShared}. */
+        protected int[] _svisits;
+        protected double[] _swins;
+
+        protected final int _iterations;
+        protected final Randoms _rands;
+        protected final int _playerIdx;
+        protected final Snapshot _snap;
+        protected final Logic _logic = new Logic();
+        protected GameTile[] _bag;
+        protected final MoveBuffer _buffer = new MoveBuffer();
+
+        /** The players' scores and piecens in play at the root of the search (shared with the
+         * snapshot, and not modified). */
+        protected final int[] _scores, _piecens;
+
+        /** The players' scores and piecens in play during a playout. */
+        protected final int[] _pscores, _ppiecens;
+    }
+
+    protected final Randoms _rands;
+    protected final ExecutorService _exec;
+    protected final int _tasks;
+    protected final TranspositionTable _table;
+
+    /** The weight given to exploring less visited moves, relative to exploiting good ones. */
+    protected static final double EXPLORATION = 0.7;
+
+    /** Distinguishes the table entries for searches by different players. */
+    protected static final long PLAYER_SALT = 0x9E3779B97F4A7C15L;
+}
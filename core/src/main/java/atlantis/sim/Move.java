@@ -0,0 +1,29 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.sim;
+
+import atlantis.shared.Piecen;
+import atlantis.shared.Placement;
+
+/**
+ * A tile placement and the piecen (if any) placed along with it.
+ */
+public class Move
+{
+    /** The placement of the tile. */
+    public final Placement play;
+
+    /** The piecen placed on the tile, or null. */
+    public final Piecen piecen;
+
+    public Move (Placement play, Piecen piecen) {
+        this.play = play;
+        this.piecen = piecen;
+    }
+
+    @Override public String toString () {
+        return play + (piecen == null ? "" : (" " + piecen));
+    }
+}
@@ -0,0 +1,23 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.sim;
+
+import atlantis.shared.GameObject;
+import atlantis.shared.GameTile;
+import atlantis.shared.Logic;
+
+/**
+ * Chooses the moves made by a simulated player.
+ */
+public interface Policy
+{
+    /**
+     * Chooses a move for the specified player, who must place the supplied tile. The supplied
+     * logic reflects the current state of the board and must not be modified.
+     *
+     * @return a legal move for the supplied tile.
+     */
+    Move choose (GameObject gobj, Logic logic, int playerIdx, GameTile tile);
+}
@@ -0,0 +1,51 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.sim;
+
+import tripleplay.util.Randoms;
+
+import atlantis.shared.GameObject;
+import atlantis.shared.GameTile;
+import atlantis.shared.Logic;
+import atlantis.shared.MoveBuffer;
+import atlantis.shared.Piecen;
+import atlantis.shared.Placement;
+
+/**
+ * Chooses uniformly among the legal placements of a tile, and places a piecen on a random
+ * unclaimed feature some fraction of the time.
+ */
+public class RandomPolicy implements Policy
+{
+    /**
+     * Creates a random policy.
+     *
+     * @param piecenOdds the probability (0 to 1) that a piecen is placed when one is available
+     * and the placement has an unclaimed feature.
+     */
+    public RandomPolicy (Randoms rands, float piecenOdds) {
+        _rands = rands;
+        _piecenOdds = piecenOdds;
+    }
+
+    // from interface Policy
+    public Move choose (GameObject gobj, Logic logic, int playerIdx, GameTile tile) {
+        logic.computeMoves(tile, gobj.piecensInPlay(playerIdx), _moves);
+        int midx = _moves.placementIndex(_rands.getInt(_moves.placements()));
+        Placement play = _moves.toPlacement(midx);
+
+        // the moves that place a piecen on this placement's unclaimed features follow it
+        int options = _moves.piecenCount(midx);
+        Piecen piecen = null;
+        if (options > 0 && _rands.getFloat(1) < _piecenOdds) {
+            piecen = _moves.toPiecen(midx + 1 + _rands.getInt(options), playerIdx);
+        }
+        return new Move(play, piecen);
+    }
+
+    protected final Randoms _rands;
+    protected final float _piecenOdds;
+    protected final MoveBuffer _moves = new MoveBuffer();
+}
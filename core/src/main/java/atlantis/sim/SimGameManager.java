@@ -0,0 +1,32 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.sim;
+
+import tripleplay.util.Randoms;
+
+import atlantis.shared.AbstractGameManager;
+import atlantis.shared.GameObject;
+import atlantis.shared.Logic;
+
+/**
+ * Manages a headless game, played out by {@link Simulator}.
+ */
+public class SimGameManager extends AbstractGameManager
+{
+    public SimGameManager (Randoms rands, String[] players) {
+        super(rands);
+        initLoopback(players);
+    }
+
+    public GameObject gameObject () {
+        return _gobj;
+    }
+
+    /** Returns the logic that tracks the state of this game's board. This must not be
+     * modified. */
+    public Logic logic () {
+        return _logic;
+    }
+}
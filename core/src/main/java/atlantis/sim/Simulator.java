@@ -0,0 +1,217 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.sim;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Random;
+
+import tripleplay.util.Randoms;
+
+import atlantis.shared.GameObject;
+import atlantis.shared.GameTile;
+import atlantis.shared.Rules;
+
+/**
+ * Plays complete games headlessly, using a {@link SimGameManager} and a pluggable {@link
+ * Policy} for each player, and reports how quickly they were played. Games are seeded, so a run
+ * with the same seed and policies plays out the same games.
+ *
+ * <p>Usage: {@code Simulator [games] [players] [seed] [policies]}, where policies is a comma
+ * separated list of policy names (see {@link #createPolicy}), assigned to the players in turn.</p>
+ */
+public class Simulator
+{
+    /** Summarizes the results of a run. */
+    public static class Stats
+    {
+        /** The number of games played. */
+        public final int games;
+
+        /** The number of turns played, in all games. */
+        public final int turns;
+
+        /** The time taken to play all games, in nanoseconds. */
+        public final long elapsed;
+
+        /** The bytes allocated by all threads playing the games, or -1 if the JVM can't say. */
+        public final long allocated;
+
+        /** The number of games won by each player (all players tied for the lead win). */
+        public final int[] wins;
+
+        /** Returns the number of games played per second. */
+        public double gamesPerSecond () {
+            return games / (elapsed / 1e9);
+        }
+
+        /** Returns the number of bytes allocated per game, or -1 if unknown. */
+        public long allocatedPerGame () {
+            return (allocated < 0) ? -1 : allocated / Math.max(games, 1);
+        }
+
+        /** Returns the specified percentile (0 to 100) of the turn times, in nanoseconds. */
+        public long turnPercentile (double pct) {
+            if (turns == 0) return 0;
+            int idx = (int)Math.ceil(pct / 100 * turns) - 1;
+            return _turnTimes[Math.max(0, Math.min(turns - 1, idx))];
+        }
+
+        @Override public String toString () {
+            StringBuilder buf = new StringBuilder();
+            buf.append(String.format("Played %d games (%d turns) in %.2fs: %.1f games/s%n",
+                                     games, turns, elapsed / 1e9, gamesPerSecond()));
+            buf.append(String.format("Turn latency (us): p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n",
+                                     turnPercentile(50) / 1e3, turnPercentile(90) / 1e3,
+                                     turnPercentile(99) / 1e3, turnPercentile(100) / 1e3));
+            long alloc = allocatedPerGame();
+            buf.append("Allocated per game (all threads): ").append(
+                (alloc < 0) ? "unknown" : String.format("%.1f KB", alloc / 1024.0)).append("\n");
+            buf.append("Wins by player: ").append(Arrays.toString(wins));
+            return buf.toString();
+        }
+
+        protected Stats (int games, long elapsed, long allocated, int[] wins,
+                         long[] turnTimes, int turns) {
+            this.games = games;
+            this.turns = turns;
+            this.elapsed = elapsed;
+            this.allocated = allocated;
+            this.wins = wins;
+            _turnTimes = Arrays.copyOf(turnTimes, turns);
+            Arrays.sort(_turnTimes);
+        }
+
+        protected final long[] _turnTimes;
+    }
+
+    public static void main (String[] args) {
+        int games = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        int players = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 1L;
+        String[] names = ((args.length > 3) ? args[3] : "random").split(",");
+
+        Randoms rands = Randoms.with(new Random(seed));
+        Policy[] policies = new Policy[players];
+        for (int ii = 0; ii < players; ii++) {
+            policies[ii] = createPolicy(names[ii % names.length], rands);
+        }
+        Simulator sim = new Simulator(policies, seed);
+
+        // warm up the JIT before we take our measurements
+        sim.run(Math.max(games / 10, 1));
+        System.out.println(sim.run(games));
+    }
+
+    /**
+     * Creates the named policy: {@code random}, or {@code mcts} optionally followed by a colon
+     * and the number of playouts per move (e.g. {@code mcts:500}).
+     */
+    public static Policy createPolicy (String name, Randoms rands) {
+        if (name.equals("random")) return new RandomPolicy(rands, 0.5f);
+        if (name.startsWith("mcts")) {
+            int iterations = name.startsWith("mcts:") ?
+                Integer.parseInt(name.substring(5)) : DEFAULT_MCTS_ITERATIONS;
+            return new MctsPolicy(rands, iterations, 0L, DEFAULT_MCTS_HORIZON);
+        }
+        throw new IllegalArgumentException("Unknown policy: " + name);
+    }
+
+    /**
+     * Creates a simulator whose games have one player for each supplied policy.
+     */
+    public Simulator (Policy[] policies, long seed) {
+        _policies = policies;
+        _players = new String[policies.length];
+        for (int ii = 0; ii < _players.length; ii++) _players[ii] = "player" + ii;
+        _seed = seed;
+    }
+
+    /**
+     * Plays the specified number of games and reports on how that went.
+     */
+    public Stats run (int games) {
+        _turns = 0;
+        int[] wins = new int[_players.length];
+        long allocStart = allocatedBytes();
+        long start = System.nanoTime();
+        for (int ii = 0; ii < games; ii++) {
+            GameObject gobj = playGame(_seed + _gamesPlayed++);
+            int best = Integer.MIN_VALUE;
+            for (int pp = 0; pp < wins.length; pp++) best = Math.max(best, gobj.scores.get(pp));
+            for (int pp = 0; pp < wins.length; pp++) {
+                if (gobj.scores.get(pp) == best) wins[pp]++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocEnd = allocatedBytes();
+        long allocated = (allocStart < 0 || allocEnd < 0) ? -1 : allocEnd - allocStart;
+        return new Stats(games, elapsed, allocated, wins, _turnTimes, _turns);
+    }
+
+    /**
+     * Plays a single game to completion, using the supplied seed to shuffle the tiles and choose
+     * the starting player.
+     *
+     * @return the game object, which contains the final scores.
+     */
+    public GameObject playGame (long seed) {
+        SimGameManager mgr = new SimGameManager(Randoms.with(new Random(seed)), _players);
+        GameObject gobj = mgr.gameObject();
+        for (int ii = 0; ii < _players.length; ii++) mgr.playerReady(ii);
+
+        while (gobj.state.get() == GameObject.State.IN_PLAY) {
+            long start = System.nanoTime();
+            int turnHolder = gobj.turnHolder.get();
+            GameTile tile = gobj.placing.get();
+            Move move = _policies[turnHolder].choose(gobj, mgr.logic(), turnHolder, tile);
+            mgr.play(turnHolder, move.play, move.piecen);
+            noteTurn(System.nanoTime() - start);
+        }
+        return gobj;
+    }
+
+    protected void noteTurn (long nanos) {
+        if (_turns == _turnTimes.length) _turnTimes = Arrays.copyOf(_turnTimes, _turns * 2);
+        _turnTimes[_turns++] = nanos;
+    }
+
+    /**
+     * Returns the number of bytes allocated by all live threads (including any search workers),
+     * or -1 if the JVM does not report it. Allocations by threads that exit between two samples
+     * are not counted. This is looked up reflectively as it is not part of the standard
+     * management API.
+     */
+    protected static long allocatedBytes () {
+        try {
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            Method getter = beanClass.getMethod("getThreadAllocatedBytes", long[].class);
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            long total = 0;
+            for (long bytes : (long[])getter.invoke(bean, bean.getAllThreadIds())) {
+                if (bytes > 0) total += bytes; // -1 for threads that exited since we listed them
+            }
+            return total;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    protected final Policy[] _policies;
+    protected final String[] _players;
+    protected final long _seed;
+    protected int _gamesPlayed;
+
+    protected long[] _turnTimes = new long[Rules.standardTiles().size() * 64];
+    protected int _turns;
+
+    /** The default number of playouts per move for an MCTS policy. */
+    protected static final int DEFAULT_MCTS_ITERATIONS = 1000;
+
+    /** The default number of turns played out by an MCTS policy. */
+    protected static final int DEFAULT_MCTS_HORIZON = 16;
+}
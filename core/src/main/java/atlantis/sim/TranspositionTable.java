@@ -0,0 +1,143 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.sim;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size table of search statistics keyed on position hashes (see {@link
+ * atlantis.shared.Logic#getHash}), which may be shared by any number of searching threads without
+ * locking.
+ *
+ * <p>Each entry packs a visit count, a total result and the age (the generation) at which it was
+ * last written into a single {@code long}, and is stored alongside that value xored with its
+ * key. A reader accepts an entry only if the two agree, so an
+ * entry torn by racing writers simply reads as missing. Racing updates to the same entry may lose
+ * one another's statistics, which is harmless for a search that only uses them as estimates.</p>
+ *
+ * <p>Entries are stored in buckets of two. When a new key is added to a full bucket, the entry
+ * written longest ago is replaced, or if both were written in the same generation, the one with
+ * the fewer visits (the shallower estimate). Generations are periods of {@link
+ * #GENERATION_MILLIS} rather than searches, so that the many searches sharing a table at once
+ * (for different games) do not age one another's entries. Ages are compared modulo the 23 bits
+ * stored, so an entry last written a multiple of about 97 days ago looks recent, which at worst
+ * preserves a stale entry for a little longer.</p>
+ */
+public class TranspositionTable
+{
+    /** The number of bytes used by each entry. */
+    public static final int ENTRY_BYTES = 16;
+
+    /** Returns the number of visits recorded in the supplied entry (as returned by {@link
+     * #probe}). */
+    public static int visits (long entry) {
+        return (int)(entry & VISITS_MASK);
+    }
+
+    /** Returns the total result of the visits recorded in the supplied entry. */
+    public static double wins (long entry) {
+        return ((entry >>> WINS_SHIFT) & WINS_MASK) / 2d;
+    }
+
+    /**
+     * Creates a table that uses at most the specified number of bytes.
+     */
+    public TranspositionTable (long maxBytes) {
+        int entries = Integer.highestOneBit((int)Math.min(maxBytes / ENTRY_BYTES, 1 << 30));
+        entries = Math.max(entries, 2);
+        _data = new AtomicLongArray(entries);
+        _checks = new AtomicLongArray(entries);
+    }
+
+    /** Returns the number of entries in this table. */
+    public int capacity () {
+        return _data.length();
+    }
+
+    /**
+     * Returns the entry for the specified key, or 0 if there is none. The entry is decoded via
+     * {@link #visits} and {@link #wins}.
+     */
+    public long probe (long key) {
+        int idx = find(key);
+        return (idx < 0) ? 0 : _data.get(idx);
+    }
+
+    /**
+     * Adds the specified visits and total result to the entry for the specified key, creating it
+     * if necessary.
+     *
+     * @param wins the total result of the visits, in multiples of one half.
+     */
+    public void add (long key, int visits, double wins) {
+        int idx = find(key);
+        long entry = (idx < 0) ? 0 : _data.get(idx);
+        long nvisits = Math.min(visits(entry) + visits, VISITS_MASK);
+        long nwins = Math.min(Math.round(wins(entry) * 2 + wins * 2), WINS_MASK);
+        int age = generation() & AGE_MASK;
+        store((idx < 0) ? victim(key, age) : idx, key, nvisits, nwins, age);
+    }
+
+    /** Returns the index of the entry for the specified key, or -1. */
+    protected int find (long key) {
+        int idx = bucket(key);
+        for (int ii = idx; ii < idx + 2; ii++) {
+            long entry = _data.get(ii);
+            if (entry != 0 && (_checks.get(ii) ^ entry) == key) return ii;
+        }
+        return -1;
+    }
+
+    /** Returns the index of the entry to be replaced by the specified new key. */
+    protected int victim (long key, int age) {
+        int idx = bucket(key);
+        long e0 = _data.get(idx), e1 = _data.get(idx+1);
+        if (e0 == 0) return idx;
+        if (e1 == 0) return idx+1;
+        int a0 = (age - age(e0)) & AGE_MASK, a1 = (age - age(e1)) & AGE_MASK;
+        if (a0 != a1) return (a0 > a1) ? idx : idx+1;
+        return (visits(e0) <= visits(e1)) ? idx : idx+1;
+    }
+
+    protected void store (int idx, long key, long visits, long wins, int age) {
+        long entry = visits | (wins << WINS_SHIFT) | ((long)age << AGE_SHIFT);
+        _data.set(idx, entry);
+        _checks.set(idx, key ^ entry);
+    }
+
+    protected int bucket (long key) {
+        int hash = (int)(key ^ (key >>> 32));
+        return hash & (_data.length() - 2);
+    }
+
+    /**
+     * Returns the current generation: the number of {@link #GENERATION_MILLIS} periods since this
+     * table was created.
+     */
+    protected int generation () {
+        return (int)((System.currentTimeMillis() - _created) / GENERATION_MILLIS);
+    }
+
+    protected static int age (long entry) {
+        return (int)(entry >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /** The packed entries, and those entries xored with their keys. */
+    protected final AtomicLongArray _data, _checks;
+
+    /** The time at which this table was created, from which generations are counted. */
+    protected final long _created = System.currentTimeMillis();
+
+    /** The length of a generation. Entries written by earlier generations are preferred for
+     * replacement. */
+    protected static final long GENERATION_MILLIS = 1000L;
+
+    /** The layout of a packed entry: 20 bits of visits, 21 bits of total result (in halves) and
+     * 23 bits of age. */
+    protected static final int WINS_SHIFT = 20, AGE_SHIFT = 41;
+    protected static final long VISITS_MASK = (1L << WINS_SHIFT) - 1;
+    protected static final long WINS_MASK = (1L << (AGE_SHIFT - WINS_SHIFT)) - 1;
+    protected static final int AGE_MASK = (1 << (64 - AGE_SHIFT)) - 1;
+}
@@ -0,0 +1,114 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.shared;
+
+import java.util.Random;
+
+import tripleplay.util.Randoms;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link AbstractGameManager} class.
+ */
+public class AbstractGameManagerTest
+{
+    @Test public void testValidatePlay () {
+        AbstractGameManager mgr = createManager();
+        GameObject gobj = mgr._gobj;
+
+        int pidx = gobj.turnHolder.get(), other = (pidx + 1) % 2;
+        GameTile tile = gobj.placing.get();
+        MoveBuffer moves = new MoveBuffer();
+        mgr._logic.computeMoves(tile, 0, moves);
+        Placement play = moves.toPlacement(0);
+        Piecen piecen = new Piecen(pidx, play.loc, 0);
+
+        checkInvalid(mgr, InvalidPlayException.Reason.NOT_TURN_HOLDER, other, play, null);
+        checkInvalid(mgr, InvalidPlayException.Reason.MALFORMED_PLAY, pidx, null, null);
+        checkInvalid(mgr, InvalidPlayException.Reason.MALFORMED_PLAY, pidx,
+                     new Placement(null, play.orient, play.loc), null);
+        checkInvalid(mgr, InvalidPlayException.Reason.MALFORMED_PLAY, pidx,
+                     new Placement(tile, null, play.loc), null);
+        checkInvalid(mgr, InvalidPlayException.Reason.MALFORMED_PLAY, pidx,
+                     new Placement(tile, play.orient, null), null);
+        GameTile wrong = new GameTile(tile.terrain == Terrain.CITY_FOUR ?
+                                      Terrain.CLOISTER_PLAIN : Terrain.CITY_FOUR, false);
+        checkInvalid(mgr, InvalidPlayException.Reason.WRONG_TILE, pidx,
+                     new Placement(wrong, play.orient, play.loc), null);
+        checkInvalid(mgr, InvalidPlayException.Reason.ILLEGAL_PLACEMENT, pidx,
+                     new Placement(tile, play.orient, new Location(5, 5)), null);
+        checkInvalid(mgr, InvalidPlayException.Reason.MALFORMED_PIECEN, pidx, play,
+                     new Piecen(other, play.loc, 0));
+        checkInvalid(mgr, InvalidPlayException.Reason.MALFORMED_PIECEN, pidx, play,
+                     new Piecen(pidx, play.loc, tile.terrain.features.length));
+        checkInvalid(mgr, InvalidPlayException.Reason.MALFORMED_PIECEN, pidx, play,
+                     new Piecen(pidx, null, 0));
+
+        // a player with all of their piecens in play can't place another
+        for (int ii = 0; ii < Rules.STARTING_PIECENS; ii++) {
+            gobj.piecens.add(new Piecen(pidx, new Location(100 + ii, 100), 0));
+        }
+        checkInvalid(mgr, InvalidPlayException.Reason.NO_PIECENS, pidx, play, piecen);
+        for (int ii = 0; ii < Rules.STARTING_PIECENS; ii++) {
+            gobj.piecens.remove(new Piecen(pidx, new Location(100 + ii, 100), 0));
+        }
+        assertEquals(0, gobj.piecensInPlay(pidx));
+        assertEquals(1, gobj.plays.size()); // only the starter has been played
+
+        // a legal play is accepted and passes the turn
+        mgr.play(pidx, play, piecen);
+        assertEquals(2, gobj.plays.size());
+        assertEquals(other, gobj.turnHolder.get().intValue());
+    }
+
+    @Test public void testClaimedFeature () {
+        AbstractGameManager mgr = createManager();
+        GameObject gobj = mgr._gobj;
+        int pidx = gobj.turnHolder.get(), other = (pidx + 1) % 2;
+        GameTile tile = gobj.placing.get();
+
+        // claim every feature of the starter, so that any tile placed next to it joins a claimed
+        // feature
+        Location origin = new Location(0, 0);
+        for (int ii = 0; ii < Rules.STARTER.terrain.features.length; ii++) {
+            Piecen claim = new Piecen(other, origin, ii);
+            gobj.piecens.add(claim);
+            mgr._logic.addPiecen(claim);
+        }
+
+        MoveBuffer moves = new MoveBuffer();
+        Placement play = mgr._logic.computeMoves(tile, 0, moves) > 0 ? moves.toPlacement(0) : null;
+        assertNotNull(play);
+        int claimed = -1;
+        for (int ii = 0; ii < tile.terrain.features.length && claimed < 0; ii++) {
+            if (!mgr._logic.isLegalMove(tile, play.orient, play.loc, ii)) claimed = ii;
+        }
+        assertTrue(claimed >= 0);
+        checkInvalid(mgr, InvalidPlayException.Reason.CLAIMED_FEATURE, pidx, play,
+                     new Piecen(pidx, play.loc, claimed));
+        assertEquals(1, gobj.plays.size());
+    }
+
+    protected static AbstractGameManager createManager () {
+        AbstractGameManager mgr = new AbstractGameManager(Randoms.with(new Random(11))) {};
+        mgr.initLoopback(new String[] { "one", "two" });
+        mgr.playerReady(0);
+        mgr.playerReady(1);
+        return mgr;
+    }
+
+    protected static void checkInvalid (AbstractGameManager mgr,
+                                        InvalidPlayException.Reason reason, int pidx,
+                                        Placement play, Piecen piecen) {
+        try {
+            mgr.play(pidx, play, piecen);
+            fail("Expected " + reason);
+        } catch (InvalidPlayException ipe) {
+            assertEquals(reason, ipe.reason);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.shared;
+
+import java.util.Map;
+import java.util.Random;
+
+import com.google.common.collect.Maps;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link BoardMap} class.
+ */
+public class BoardMapTest
+{
+    @Test public void testKeys () {
+        int[] coords = { 0, 1, -1, Short.MAX_VALUE, Short.MIN_VALUE };
+        for (int x : coords) {
+            for (int y : coords) {
+                int key = BoardMap.key(x, y);
+                assertEquals(x, BoardMap.keyX(key));
+                assertEquals(y, BoardMap.keyY(key));
+            }
+        }
+    }
+
+    @Test public void testNeighbor () {
+        BoardMap<String> map = new BoardMap<String>();
+        map.put(new Location(3, 4), "center");
+        map.put(new Location(3, 3), "north");
+        assertEquals("north", map.get(new Location(3, 4), Orient.NORTH));
+        assertEquals("center", map.get(new Location(3, 3), Orient.SOUTH));
+        assertNull(map.get(new Location(3, 4), Orient.EAST));
+    }
+
+    @Test public void testAgainstHashMap () {
+        Random rando = new Random(42);
+        BoardMap<Integer> map = new BoardMap<Integer>();
+        Map<Location, Integer> expect = Maps.newHashMap();
+        for (int ii = 0; ii < 20000; ii++) {
+            // use a small, diagonal-heavy range of coordinates to exercise collisions
+            int x = rando.nextInt(40) - 20, y = (rando.nextInt(4) == 0) ? x : rando.nextInt(40) - 20;
+            Location loc = new Location(x, y);
+            if (rando.nextInt(3) == 0) {
+                assertEquals(expect.remove(loc), map.remove(loc));
+            } else {
+                assertEquals(expect.put(loc, ii), map.put(loc, ii));
+            }
+            assertEquals(expect.size(), map.size());
+        }
+
+        int count = 0;
+        for (int slot = map.firstSlot(); slot >= 0; slot = map.nextSlot(slot)) {
+            Location loc = new Location(map.slotX(slot), map.slotY(slot));
+            assertEquals(expect.get(loc), map.slotValue(slot));
+            count++;
+        }
+        assertEquals(expect.size(), count);
+        for (Map.Entry<Location, Integer> entry : expect.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.shared;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link GameObject} class.
+ */
+public class GameObjectTest
+{
+    @Test public void testLateEvents () {
+        GameObject gobj = new GameObject(new String[] { "one", "two" }, null);
+        Piecen piecen = new Piecen(1, new Location(2, 3), 0);
+
+        // the set is updated before the index is first built...
+        gobj.piecens.add(piecen);
+        assertEquals(1, gobj.piecensInPlay(1));
+        // ...and the add event is then delivered, which must not count the piecen again
+        gobj._indexer.onAdd(piecen);
+        assertEquals(1, gobj.piecensInPlay(1));
+        assertEquals(piecen, gobj.piecenAt(piecen.loc));
+
+        // likewise for a removal whose event arrives after the index reflects it
+        gobj.piecens.remove(piecen);
+        gobj._indexer.onRemove(piecen);
+        assertEquals(0, gobj.piecensInPlay(1));
+        assertNull(gobj.piecenAt(piecen.loc));
+        assertEquals(0, gobj.piecensInPlay(0));
+    }
+}
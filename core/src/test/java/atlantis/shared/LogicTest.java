@@ -39,6 +39,101 @@ public class LogicTest
         assertEquals(valid, logic.computeLegalPlays(play));
     }
 
+    @Test public void testLegalPlaysCache () {
+        Logic logic = new Logic();
+        logic.addPlacement(new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0)));
+        GameTile road = new GameTile(Terrain.STRAIGHT_ROAD, false);
+        Set<Location> before = logic.computeLegalPlays(road);
+        Set<Location> copy = Sets.newHashSet(before);
+
+        // tiles with the same terrain share the legal plays until the board changes
+        assertSame(before, logic.computeLegalPlays(new GameTile(Terrain.STRAIGHT_ROAD, true)));
+        logic.addPlacement(placement(Terrain.STRAIGHT_ROAD, Orient.EAST, -1, 0));
+        assertEquals(copy, before);
+        Set<Location> after = logic.computeLegalPlays(road);
+        assertFalse(after.contains(new Location(-1, 0)));
+        assertTrue(after.contains(new Location(-2, 0)));
+        assertEquals(Orient.EAST, logic.computeLegalOrients(road, new Location(-2, 0)).get(0));
+    }
+
+    @Test public void testIsLegalPlay () {
+        Logic logic = new Logic();
+        logic.addPlacement(new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0)));
+
+        GameTile city = new GameTile(Terrain.CITY_ONE, false);
+        assertTrue(logic.isLegalPlay(city, Orient.SOUTH, new Location(0, -1)));
+        assertFalse(logic.isLegalPlay(city, Orient.NORTH, new Location(0, -1)));
+        assertTrue(logic.isLegalPlay(city, Orient.SOUTH, new Location(0, 1)));
+        assertFalse(logic.isLegalPlay(city, Orient.NORTH, new Location(0, 0))); // occupied
+        assertFalse(logic.isLegalPlay(city, Orient.NORTH, new Location(2, 2))); // no neighbors
+        for (Orient orient : Orient.values()) {
+            assertEquals(logic.computeLegalOrients(city, new Location(1, 0)).contains(orient),
+                         logic.isLegalPlay(city, orient, new Location(1, 0)));
+        }
+    }
+
+    @Test public void testComputeMoves () {
+        Logic logic = new Logic();
+        logic.addPlacement(new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0)));
+        Placement west = placement(Terrain.STRAIGHT_ROAD, Orient.EAST, -1, 0);
+        logic.addPlacement(west);
+        logic.addPiecen(new Piecen(0, west.loc, 2));
+
+        GameTile tile = new GameTile(Terrain.STRAIGHT_ROAD, false);
+        MoveBuffer moves = new MoveBuffer();
+        int count = logic.computeMoves(tile, 0, moves);
+        int placements = 0;
+        for (int ii = 0; ii < count; ii++) {
+            Placement play = moves.toPlacement(ii);
+            assertTrue(logic.isLegalPlay(tile, play.orient, play.loc));
+            int fidx = moves.featureIdx(ii);
+            if (fidx < 0) {
+                placements++;
+            } else {
+                Feature f = play.getFeature(fidx);
+                assertEquals(0, logic.computeClaim(tile, play.orient, play.loc, f));
+            }
+        }
+        int expect = 0;
+        for (Location loc : logic.computeLegalPlays(tile)) {
+            expect += logic.computeLegalOrients(tile, loc).size();
+        }
+        assertEquals(expect, placements);
+
+        // the road extending the claimed road cannot be claimed, but its fields can
+        Location end = new Location(-2, 0);
+        assertTrue(moves.indexOf(end, Orient.EAST, -1) >= 0);
+        assertEquals(-1, moves.indexOf(end, Orient.EAST, 2));
+        assertTrue(moves.indexOf(end, Orient.EAST, 0) >= 0);
+        assertFalse(logic.isLegalMove(tile, Orient.EAST, end, 2));
+        assertTrue(logic.isLegalMove(tile, Orient.EAST, end, 0));
+
+        // a player with no piecens available gets only placements
+        assertEquals(placements, logic.computeMoves(tile, Rules.STARTING_PIECENS, moves));
+    }
+
+    @Test public void testHasLegalPlay () {
+        Logic logic = new Logic();
+        logic.setJournaling(true);
+        checkHasLegalPlay(logic); // nothing is playable on an empty board
+        logic.addPlacement(new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0)));
+        checkHasLegalPlay(logic);
+        logic.addPlacement(placement(Terrain.CITY_FOUR, Orient.NORTH, 0, -1));
+        checkHasLegalPlay(logic);
+        logic.undo();
+        checkHasLegalPlay(logic);
+    }
+
+    protected void checkHasLegalPlay (Logic logic) {
+        // check each terrain twice to exercise the cached result
+        for (int ii = 0; ii < 2; ii++) {
+            for (Terrain terrain : Terrain.values()) {
+                GameTile tile = new GameTile(terrain, false);
+                assertEquals(!logic.computeLegalPlays(tile).isEmpty(), logic.hasLegalPlay(tile));
+            }
+        }
+    }
+
     @Test public void testDoubleScore () {
         Logic logic = new Logic();
         logic.addPlacement(new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0)));
@@ -54,6 +149,169 @@ public class LogicTest
         assertEquals(10, scores.get(0).score);
     }
 
+    @Test public void testMergeClaims () {
+        Logic logic = new Logic();
+        logic.addPlacement(new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0)));
+
+        // claim two disconnected segments of road
+        Placement west = placement(Terrain.STRAIGHT_ROAD, Orient.EAST, -1, 0);
+        logic.addPlacement(west);
+        logic.addPiecen(new Piecen(0, west.loc, 2));
+        Placement east = placement(Terrain.STRAIGHT_ROAD, Orient.EAST, 2, 0);
+        logic.addPlacement(east);
+        logic.addPiecen(new Piecen(1, east.loc, 2));
+        Feature road = west.getFeature(2);
+        assertTrue(logic.getClaim(west).getClaimGroup(road) !=
+                   logic.getClaim(east).getClaimGroup(road));
+
+        // now connect them and ensure that they end up in the same claim group
+        Placement join = placement(Terrain.STRAIGHT_ROAD, Orient.EAST, 1, 0);
+        logic.addPlacement(join);
+        int group = logic.getClaim(west).getClaimGroup(road);
+        assertTrue(group != 0);
+        assertEquals(group, logic.getClaim(east).getClaimGroup(road));
+        assertEquals(group, logic.getClaim(join).getClaimGroup(road));
+        int node = logic.getClaim(join).getNode(2);
+        assertEquals(Sets.newHashSet(0, 1), logic.getScorers(node));
+        assertEquals(2, logic.getPiecens(node).size());
+        assertEquals(group, logic.computeClaim(west.tile, Orient.EAST, new Location(3, 0), road));
+        // the road spans four tiles and is open at both ends
+        assertEquals(-4, logic.computeFeatureScore(join, road));
+
+        // reclaiming a piecen removes it from the group's scorers
+        logic.clearPiecen(logic.getPiecens(node).get(0));
+        assertEquals(1, logic.getPiecens(node).size());
+        assertEquals(1, logic.getScorers(node).size());
+    }
+
+    @Test public void testCloisterScore () {
+        Logic logic = new Logic();
+        logic.addPlacement(new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0)));
+        Placement cloister = placement(Terrain.CLOISTER_PLAIN, Orient.NORTH, 0, 1);
+        logic.addPlacement(cloister);
+        Feature cf = cloister.getFeature(1);
+        assertEquals(-2, logic.computeFeatureScore(cloister, cf));
+
+        // fill in the rest of the cloister's neighborhood
+        logic.addPlacement(placement(Terrain.STRAIGHT_ROAD, Orient.EAST, -1, 0));
+        logic.addPlacement(placement(Terrain.STRAIGHT_ROAD, Orient.EAST, 1, 0));
+        int[] coords = { -1,1, 1,1, -1,2, 0,2, 1,2 };
+        for (int ii = 0; ii < coords.length; ii += 2) {
+            logic.addPlacement(placement(Terrain.CLOISTER_PLAIN, Orient.NORTH,
+                                         coords[ii], coords[ii+1]));
+        }
+        assertEquals(9, logic.computeFeatureScore(cloister, cf));
+    }
+
+    @Test public void testUndo () {
+        Logic logic = new Logic();
+        logic.setJournaling(true);
+        logic.addPlacement(new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0)));
+        Placement west = placement(Terrain.STRAIGHT_ROAD, Orient.EAST, -1, 0);
+        logic.addPlacement(west);
+        logic.addPiecen(new Piecen(0, west.loc, 2));
+        Feature road = west.getFeature(2);
+        int group = logic.getClaim(west).getClaimGroup(road);
+        GameTile tile = new GameTile(Terrain.STRAIGHT_ROAD, false);
+        Set<Location> legal = logic.computeLegalPlays(tile);
+
+        // extend and claim the road, then undo both changes
+        Placement east = placement(Terrain.STRAIGHT_ROAD, Orient.EAST, 1, 0);
+        logic.addPlacement(east);
+        logic.addPiecen(new Piecen(1, east.loc, 2));
+        assertEquals(-3, logic.computeFeatureScore(west, road));
+        logic.undo();
+        logic.undo();
+
+        assertEquals(-2, logic.computeFeatureScore(west, road));
+        assertEquals(group, logic.getClaim(west).getClaimGroup(road));
+        assertEquals(0, logic.getClaim(east).getClaimGroup(road));
+        assertEquals(legal, logic.computeLegalPlays(tile));
+        assertEquals(Sets.newHashSet(0), logic.getScorers(logic.getClaim(west).getNode(2)));
+
+        // undoing everything else leaves an empty board
+        logic.undo();
+        logic.undo();
+        logic.undo();
+        assertFalse(logic.canUndo());
+        assertTrue(logic.computeLegalPlays(tile).isEmpty());
+    }
+
+    @Test public void testHash () {
+        Placement start = new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0));
+        Placement west = placement(Terrain.STRAIGHT_ROAD, Orient.EAST, -1, 0);
+        Placement east = placement(Terrain.STRAIGHT_ROAD, Orient.EAST, 1, 0);
+        Piecen piecen = new Piecen(0, west.loc, 2);
+
+        Logic l1 = new Logic();
+        assertEquals(0L, l1.getHash());
+        l1.setJournaling(true);
+        l1.addPlacement(start);
+        l1.addPlacement(west);
+        long unclaimed = l1.getHash();
+        l1.addPiecen(piecen);
+        l1.addPlacement(east);
+
+        // the same board built in a different order has the same hash
+        Logic l2 = new Logic();
+        l2.addPlacement(start);
+        l2.addPlacement(east);
+        l2.addPlacement(west);
+        l2.addPiecen(piecen);
+        assertEquals(l1.getHash(), l2.getHash());
+
+        // the hash distinguishes piecen owners and tile orientations
+        Piecen other = new Piecen(1, west.loc, 2);
+        l2.clearPiecen(piecen);
+        l2.addPiecen(other);
+        assertTrue(l1.getHash() != l2.getHash());
+        Placement turned = placement(Terrain.STRAIGHT_ROAD, Orient.WEST, -1, 0);
+        assertTrue(Logic.hash(west) != Logic.hash(turned));
+
+        // undoing changes and reclaiming piecens restore earlier hashes
+        l2.clearPiecen(other);
+        long bare = l2.getHash();
+        l1.undo();
+        l1.undo();
+        assertEquals(unclaimed, l1.getHash());
+        l1.addPlacement(east);
+        assertEquals(bare, l1.getHash());
+    }
+
+    @Test public void testCanonicalHash () {
+        Placement start = new Placement(Rules.STARTER, Orient.NORTH, new Location(0, 0));
+        Placement west = placement(Terrain.STRAIGHT_ROAD, Orient.EAST, -1, 0);
+        Piecen piecen = new Piecen(0, west.loc, 2);
+        assertEquals(new Location(0, -1), west.loc.rotate(1));
+        assertEquals(Orient.SOUTH, west.rotate(1).orient);
+
+        Logic logic = new Logic();
+        logic.addPlacement(start);
+        logic.addPlacement(west);
+        logic.addPiecen(piecen);
+
+        // each rotation of the board has the hash the logic reports for that rotation, and all
+        // rotations share a canonical hash
+        for (int ticks = 0; ticks < 4; ticks++) {
+            Logic rotated = new Logic();
+            rotated.addPlacement(start.rotate(ticks));
+            rotated.addPlacement(west.rotate(ticks));
+            rotated.addPiecen(piecen.rotate(ticks));
+            assertEquals(logic.getHash(ticks), rotated.getHash());
+            assertEquals(Logic.hash(west, ticks), Logic.hash(west.rotate(ticks)));
+            assertEquals(logic.getCanonicalHash(), rotated.getCanonicalHash());
+            int canon = rotated.getCanonicalRotation();
+            assertEquals(logic.getCanonicalHash(), rotated.getHash(canon));
+        }
+
+        // reflections are not rotations, so mirrored boards are distinct
+        Logic mirrored = new Logic();
+        mirrored.addPlacement(start);
+        mirrored.addPlacement(placement(Terrain.STRAIGHT_ROAD, Orient.EAST, 1, 0));
+        mirrored.addPiecen(new Piecen(0, new Location(1, 0), 2));
+        assertTrue(logic.getCanonicalHash() != mirrored.getCanonicalHash());
+    }
+
     protected static Placement placement (Terrain tile, Orient orient, int x, int y) {
         return new Placement(new GameTile(tile, false), orient, new Location(x, y));
     }
@@ -33,5 +33,18 @@ public class PlacementTest
         assertEquals(road.terrain.features[0], p.findFeature(Edge.ENE_F));
         // and ESE edge is 1:
         assertEquals(road.terrain.features[1], p.findFeature(Edge.ESE_F));
+        // and the road is on the east and west edges
+        assertEquals(2, p.findFeatureIndex(Edge.EAST_F));
+        assertEquals(2, p.findFeatureIndex(Edge.WEST_F));
+        // and the grass north of the road is on the north edge
+        assertEquals(0, p.findFeatureIndex(Edge.NORTH_F));
+    }
+
+    @Test public void testTranslateMask () {
+        assertEquals(Edge.EAST_F, Edge.translateMask(Edge.NORTH_F, 1));
+        assertEquals(Edge.WNW_F, Edge.translateMask(Edge.NNE_F, -1));
+        assertEquals(Edge.WSW_F, Edge.translateMask(Edge.ENE_F, 6));
+        // masks with multiple edges are not translated
+        assertEquals(Edge.NORTH_F|Edge.SOUTH_F, Edge.translateMask(Edge.NORTH_F|Edge.SOUTH_F, 1));
     }
 }
@@ -0,0 +1,73 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.sim;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tripleplay.util.Randoms;
+
+import atlantis.shared.GameObject;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link MctsPolicy} class.
+ */
+public class MctsPolicyTest
+{
+    @Test public void testPlayGame () {
+        // play a complete game against a random player
+        GameObject g1 = createSimulator(5).playGame(5);
+        assertEquals(GameObject.State.GAME_OVER, g1.state.get());
+
+        // searching with an iteration budget is deterministic for a given seed
+        GameObject g2 = createSimulator(5).playGame(5);
+        for (int ii = 0; ii < g1.players.length; ii++) {
+            assertEquals(g1.scores.get(ii), g2.scores.get(ii));
+        }
+    }
+
+    @Test public void testParallelDeterministic () {
+        ExecutorService exec = Executors.newFixedThreadPool(3);
+        try {
+            // the tasks of a parallel search are merged in order, so scheduling does not matter
+            GameObject g1 = createSimulator(9, exec).playGame(9);
+            GameObject g2 = createSimulator(9, exec).playGame(9);
+            for (int ii = 0; ii < g1.players.length; ii++) {
+                assertEquals(g1.scores.get(ii), g2.scores.get(ii));
+            }
+        } finally {
+            exec.shutdown();
+        }
+    }
+
+    @Test public void testSharedTable () {
+        ExecutorService exec = Executors.newFixedThreadPool(3);
+        try {
+            // both players share a table, and each search's tasks share it too
+            TranspositionTable table = new TranspositionTable(1 << 20);
+            Randoms rands = Randoms.with(new Random(4));
+            Simulator sim = new Simulator(new Policy[] {
+                new MctsPolicy(rands, 30, 0L, 4, exec, 3, table),
+                new MctsPolicy(rands, 30, 0L, 4, exec, 3, table) }, 4);
+            assertEquals(GameObject.State.GAME_OVER, sim.playGame(4).state.get());
+        } finally {
+            exec.shutdown();
+        }
+    }
+
+    protected static Simulator createSimulator (long seed) {
+        return createSimulator(seed, null);
+    }
+
+    protected static Simulator createSimulator (long seed, ExecutorService exec) {
+        Randoms rands = Randoms.with(new Random(seed));
+        return new Simulator(new Policy[] {
+            new MctsPolicy(rands, 30, 0L, 4, exec, 3), new RandomPolicy(rands, 0.5f) }, seed);
+    }
+}
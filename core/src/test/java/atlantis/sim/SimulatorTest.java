@@ -0,0 +1,47 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.sim;
+
+import java.util.Random;
+
+import tripleplay.util.Randoms;
+
+import atlantis.shared.GameObject;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link Simulator} class.
+ */
+public class SimulatorTest
+{
+    @Test public void testPlayGame () {
+        GameObject gobj = createSimulator(7).playGame(7);
+        assertEquals(GameObject.State.GAME_OVER, gobj.state.get());
+        assertTrue(gobj.piecens.isEmpty()); // all piecens are reclaimed at the end of the game
+    }
+
+    @Test public void testDeterministic () {
+        GameObject g1 = createSimulator(3).playGame(3), g2 = createSimulator(3).playGame(3);
+        assertEquals(g1.plays.size(), g2.plays.size());
+        for (int ii = 0; ii < g1.players.length; ii++) {
+            assertEquals(g1.scores.get(ii), g2.scores.get(ii));
+        }
+    }
+
+    @Test public void testRun () {
+        Simulator.Stats stats = createSimulator(1).run(3);
+        assertEquals(3, stats.games);
+        assertTrue(stats.turns > 0);
+        assertTrue(stats.turnPercentile(50) <= stats.turnPercentile(100));
+    }
+
+    protected static Simulator createSimulator (long seed) {
+        Randoms rands = Randoms.with(new Random(seed));
+        return new Simulator(new Policy[] {
+            new RandomPolicy(rands, 0.5f), new RandomPolicy(rands, 0.5f) }, seed);
+    }
+}
@@ -0,0 +1,121 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.sim;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link TranspositionTable} class.
+ */
+public class TranspositionTableTest
+{
+    @Test public void testAddAndProbe () {
+        TranspositionTable table = new TranspositionTable(1024);
+        assertEquals(1024 / TranspositionTable.ENTRY_BYTES, table.capacity());
+        assertEquals(0L, table.probe(42L));
+
+        table.add(42L, 1, 0.5);
+        table.add(42L, 2, 1);
+        long entry = table.probe(42L);
+        assertEquals(3, TranspositionTable.visits(entry));
+        assertEquals(1.5, TranspositionTable.wins(entry), 0);
+        assertEquals(0L, table.probe(43L));
+    }
+
+    @Test public void testReplacement () {
+        // a two entry table has a single bucket
+        TestTable table = new TestTable(1);
+        table.add(1L, 5, 0);
+        table.add(2L, 1, 0);
+        // the shallower entry is replaced by a new key from the same generation...
+        table.add(3L, 1, 0);
+        assertTrue(table.probe(1L) != 0);
+        assertEquals(0L, table.probe(2L));
+
+        // ...but older entries are replaced in preference to shallower ones
+        table.gen++;
+        table.add(3L, 1, 0);
+        table.add(4L, 1, 0);
+        assertEquals(0L, table.probe(1L));
+        assertTrue(table.probe(3L) != 0);
+    }
+
+    @Test public void testInterleavedSearches () {
+        TestTable table = new TestTable(1);
+        // one search records a deep estimate, and then another search (of another game) starts
+        // and records a shallow one in the same bucket
+        table.add(1L, 50, 25);
+        table.add(2L, 1, 1);
+        // when the first search adds a new key, the other search's shallow entry is replaced
+        // rather than its own deep one, as starting a search does not age earlier entries
+        table.add(3L, 1, 0);
+        assertEquals(50, TranspositionTable.visits(table.probe(1L)));
+        assertEquals(0L, table.probe(2L));
+        // and the second search carries on with the deep entry in place
+        table.add(2L, 1, 1);
+        assertEquals(50, TranspositionTable.visits(table.probe(1L)));
+
+    }
+
+    @Test public void testAgeWraparound () {
+        // ages are compared with wraparound, so an entry from the last generation before the age
+        // wraps is older than one written just after
+        TestTable table = new TestTable(1);
+        table.gen = TranspositionTable.AGE_MASK;
+        table.add(1L, 100, 0);
+        table.gen++;
+        table.add(2L, 1, 0);
+        table.add(3L, 1, 0);
+        assertEquals(0L, table.probe(1L));
+        assertTrue(table.probe(2L) != 0);
+        assertTrue(table.probe(3L) != 0);
+    }
+
+    @Test public void testConcurrentAdds () throws Exception {
+        final TranspositionTable table = new TranspositionTable(1 << 12);
+        final int keys = 64, adds = 10000;
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        for (int tt = 0; tt < 4; tt++) {
+            final long seed = tt;
+            exec.execute(new Runnable() {
+                public void run () {
+                    Random rando = new Random(seed);
+                    for (int ii = 0; ii < adds; ii++) table.add(rando.nextInt(keys) + 1, 1, 1);
+                }
+            });
+        }
+        exec.shutdown();
+        assertTrue(exec.awaitTermination(10, TimeUnit.SECONDS));
+
+        // racing updates may be lost, but every entry that is present must be consistent
+        int total = 0;
+        for (int key = 1; key <= keys; key++) {
+            long entry = table.probe(key);
+            assertEquals(TranspositionTable.visits(entry), TranspositionTable.wins(entry), 0);
+            total += TranspositionTable.visits(entry);
+        }
+        assertTrue(total > 0 && total <= 4 * adds);
+    }
+
+    /** A table whose generation is set by the test, rather than by the clock. */
+    protected static class TestTable extends TranspositionTable
+    {
+        public int gen;
+
+        public TestTable (long maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override protected int generation () {
+            return gen;
+        }
+    }
+}
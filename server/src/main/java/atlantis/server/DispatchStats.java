@@ -0,0 +1,90 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static atlantis.shared.Log.log;
+
+/**
+ * Records the latency, call count and failure count of each method of our services, as
+ * dispatched to their server-side implementations (see {@link InstrumentedGameService} and
+ * {@link InstrumentedMatchService}). Recording a call neither locks nor allocates.
+ */
+public class DispatchStats
+{
+    /** The statistics for a single service method. */
+    public static class Method
+    {
+        /** The name of the method, qualified by its service. */
+        public final String name;
+
+        /** The latencies of all calls, whether or not they failed. */
+        public final LatencyStats latency = new LatencyStats();
+
+        /** The number of calls that threw an exception. */
+        public final AtomicLong failures = new AtomicLong();
+
+        /**
+         * Records a call that started at the specified time (per {@link System#nanoTime}).
+         */
+        public void record (long started, boolean failed) {
+            latency.record(System.nanoTime() - started);
+            if (failed) failures.incrementAndGet();
+        }
+
+        @Override
+        public String toString () {
+            return name + " failures=" + failures.get() + " " + latency;
+        }
+
+        protected Method (String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Creates and registers the statistics for the specified method.
+     */
+    public static Method register (String name) {
+        Method method = new Method(name);
+        _methods.add(method);
+        return method;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of all registered methods, one method per line.
+     */
+    public static String snapshot () {
+        StringBuilder buf = new StringBuilder();
+        for (Method method : _methods) {
+            if (buf.length() > 0) buf.append("\n");
+            buf.append(method);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Logs a snapshot of the statistics every {@code millis} milliseconds, using the supplied
+     * timer. A failure to log one snapshot does not stop the later ones.
+     */
+    public static void logPeriodically (final TurnTimer timer, final long millis) {
+        timer.schedule(millis, new Runnable() {
+            public void run () {
+                try {
+                    log.info("Service dispatch stats\n" + snapshot());
+                } finally {
+                    // keep logging even if this snapshot failed
+                    logPeriodically(timer, millis);
+                }
+            }
+        });
+    }
+
+    /** The statistics for every registered method. */
+    protected static final List<Method> _methods = new CopyOnWriteArrayList<Method>();
+}
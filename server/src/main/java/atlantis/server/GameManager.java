@@ -5,15 +5,26 @@
 package atlantis.server;
 
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
 
+import com.threerings.nexus.distrib.Action;
 import com.threerings.nexus.distrib.Keyed;
 import com.threerings.nexus.distrib.Nexus;
+import com.threerings.nexus.util.Callback;
 
 import tripleplay.util.Randoms;
 
 import atlantis.shared.AbstractGameManager;
 import atlantis.shared.Factory_GameService;
 import atlantis.shared.GameObject;
+import atlantis.shared.GameTile;
+import atlantis.sim.MctsPolicy;
+import atlantis.sim.Move;
+import atlantis.sim.Policy;
+import atlantis.sim.RandomPolicy;
+import atlantis.sim.TranspositionTable;
+
+import static atlantis.shared.Log.log;
 
 /**
  * Manages client/server games.
@@ -21,9 +32,30 @@ import atlantis.shared.GameObject;
 public class GameManager extends AbstractGameManager
     implements Keyed
 {
-    public GameManager (Nexus nexus, int gameId, String[] players) {
+    /**
+     * Creates a game manager for the specified players, the first {@code humans} of which are
+     * real players. The rest are played by bots, which search for their moves on the supplied
+     * executor (rather than tying up the game's execution context), sharing their search
+     * statistics via the supplied table. Every turn is timed by the supplied timer, and a player
+     * who has not played when their turn times out has a move made for them.
+     */
+    public GameManager (Nexus nexus, int gameId, String[] players, int humans,
+                        ExecutorService botExec, TranspositionTable botTable,
+                        TurnTimer turnTimer) {
         super(Randoms.with(new Random()));
-        init(new GameObject(players, Factory_GameService.createDispatcher(this)));
+        init(new GameObject(
+            players, Factory_GameService.createDispatcher(new InstrumentedGameService(this))));
+        _nexus = nexus;
+        _turnTimer = turnTimer;
+        _autoPolicy = new RandomPolicy(_rands, 0);
+
+        // create our bots, which are ready to play from the start
+        _bots = new MctsPolicy[players.length];
+        for (int ii = humans; ii < players.length; ii++) {
+            _bots[ii] = new MctsPolicy(_rands, BOT_ITERATIONS, BOT_MILLIS, BOT_HORIZON,
+                                       botExec, BOT_TASKS, botTable);
+            _ready.add(ii);
+        }
 
         // register as a keyed entity, and our object as a child in our same execution context
         _gameId = gameId;
@@ -40,5 +72,127 @@ public class GameManager extends AbstractGameManager
         return _gameId;
     }
 
+    /**
+     * Stops this game's turn clock and unregisters this manager and its game object from the
+     * Nexus, after which neither is retained. Any bot search or turn timeout that completes
+     * afterwards is ignored. Must be called from our execution context.
+     */
+    public void shutdown () {
+        if (_shutdown) return;
+        _shutdown = true;
+        turnEnded(-1);
+        _nexus.clear(_gobj);
+        _nexus.clearKeyed(this);
+    }
+
+    /**
+     * Returns a rough estimate of the memory retained by this game (its manager, logic, game
+     * object and bots), in bytes. This is not measured, but derived from the number of plays as
+     * of the start of the latest turn, using figures measured with simulated games. This may be
+     * called from any thread.
+     */
+    public long estimateRetainedBytes () {
+        return _retainedEstimate;
+    }
+
+    @Override
+    protected void turnStarted (final int turnHolder, GameTile tile) {
+        if (_shutdown) return;
+        _retainedEstimate = BASE_BYTES + _gobj.plays.size() * PLAY_BYTES;
+
+        // start the turn clock; bots are timed too, in case their search fails
+        final int turn = ++_turns;
+        _turnTimeout = _turnTimer.schedule(TURN_MILLIS, new Runnable() {
+            public void run () {
+                _nexus.invoke(GameManager.class, _gameId, new Action<GameManager>() {
+                    public void invoke (GameManager mgr) {
+                        mgr.turnExpired(turn);
+                    }
+                });
+            }
+        });
+
+        MctsPolicy bot = _bots[turnHolder];
+        if (bot == null) return; // it's a real player's turn
+
+        // capture the game state here, search on the bot executor, and then hop back into our
+        // execution context to make the play
+        bot.start(_gobj, _logic, turnHolder, tile, new Callback<Move>() {
+            public void onSuccess (final Move move) {
+                _nexus.invoke(GameManager.class, _gameId, new Action<GameManager>() {
+                    public void invoke (GameManager mgr) {
+                        // if the turn timed out (or the game was shut down) while we searched,
+                        // the move is stale
+                        if (mgr._turns == turn && !mgr._shutdown) {
+                            mgr.play(turnHolder, move.play, move.piecen);
+                        }
+                    }
+                });
+            }
+            public void onFailure (Throwable cause) {
+                // the turn clock will play for the bot
+                log.warning("Bot failed to choose a move", "game", _gameId,
+                            "pidx", turnHolder, cause);
+            }
+        });
+    }
+
+    @Override
+    protected void turnEnded (int turnHolder) {
+        if (_turnTimeout != null) {
+            _turnTimeout.cancel();
+            _turnTimeout = null;
+        }
+    }
+
+    /**
+     * Called (in our execution context) when the specified turn's clock runs out. If the turn
+     * has not been played in the meantime, a tile placement is made for the turn holder. The
+     * drawn tile is always playable, so the game never waits on an absent player for longer than
+     * {@link #TURN_MILLIS}.
+     */
+    protected void turnExpired (int turn) {
+        if (_shutdown || turn != _turns || _gobj.state.get() != GameObject.State.IN_PLAY) return;
+        int turnHolder = _gobj.turnHolder.get();
+        log.info("Turn timed out, playing for player", "game", _gameId, "pidx", turnHolder);
+        Move move = _autoPolicy.choose(_gobj, _logic, turnHolder, _gobj.placing.get());
+        play(turnHolder, move.play, move.piecen);
+    }
+
+    protected final Nexus _nexus;
+    protected final TurnTimer _turnTimer;
     protected final int _gameId;
+
+    /** The policy for each player that is a bot, or null for real players. */
+    protected final MctsPolicy[] _bots;
+
+    /** Makes a move for players whose turns time out: a random placement, without a piecen. */
+    protected final Policy _autoPolicy;
+
+    /** The number of turns started, which identifies the current turn. */
+    protected int _turns;
+
+    /** The clock for the current turn, or null. */
+    protected TurnTimer.Timeout _turnTimeout;
+
+    /** Set once we've been shut down, after which we ignore our bots and turn clock. */
+    protected boolean _shutdown;
+
+    /** The latest estimate of our retained memory, which is read from other threads. */
+    protected volatile long _retainedEstimate = BASE_BYTES;
+
+    /** The search budget for bot moves. Each search uses at most {@link #BOT_TASKS} threads,
+     * which caps the bot executor time that any one game can take. */
+    protected static final int BOT_ITERATIONS = 2000;
+    protected static final long BOT_MILLIS = 2000L;
+    protected static final int BOT_HORIZON = 16;
+    protected static final int BOT_TASKS = 2;
+
+    /** The time a player has to make their play before one is made for them. */
+    protected static final long TURN_MILLIS = 60*1000L;
+
+    /** The memory retained by a game with no plays (about 58KB), and by each play (about 240
+     * bytes), as measured with simulated games. Used by {@link #estimateRetainedBytes}. */
+    protected static final long BASE_BYTES = 58*1024L;
+    protected static final long PLAY_BYTES = 240L;
 }
@@ -0,0 +1,172 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.ObjectName;
+
+import com.google.common.collect.Maps;
+
+import react.Connection;
+import react.Slot;
+import react.UnitSlot;
+
+import com.threerings.nexus.distrib.Action;
+import com.threerings.nexus.distrib.Nexus;
+
+import atlantis.shared.GameObject;
+
+import static atlantis.shared.Log.log;
+
+/**
+ * Tracks the live games and shuts them down when they are no longer needed: a finished game once
+ * its players have had a grace period to look over the final scores, and any game as soon as all
+ * of its real players have disconnected. Shut down games are unregistered from the Nexus, so that
+ * neither their managers nor their game objects are retained.
+ *
+ * <p>The number of live games and an estimate of their memory are available via JMX once {@link
+ * #export}ed.</p>
+ */
+public class GameReaper
+    implements GameReaperMBean
+{
+    public GameReaper (Nexus nexus, TurnTimer timer) {
+        _nexus = nexus;
+        _timer = timer;
+    }
+
+    /**
+     * Registers our metrics with the platform MBean server under the specified name (e.g. {@code
+     * atlantis:type=GameReaper}). Failure is logged, but is not fatal.
+     */
+    public void export (String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        } catch (Exception e) {
+            log.warning("Failed to export game metrics", "name", name, e);
+        }
+    }
+
+    /**
+     * Starts tracking the supplied newly created game, which is played by the supplied real
+     * players. This may be called from any thread: the game is counted as live immediately, we
+     * listen for its players' departures right away (counting any who have already left), and
+     * its state is watched from within its own execution context.
+     */
+    public void watch (final GameManager mgr, List<Player> players) {
+        final Watch watch = new Watch(mgr, players.size());
+        _games.put(mgr.getKey(), watch);
+
+        // if all of the real players leave, there's no one left to play for
+        for (Player player : players) {
+            // a player may leave before or while we connect, so count them at most once
+            final AtomicBoolean departed = new AtomicBoolean();
+            watch.conns.add(player.onDisconnect.connect(new UnitSlot() {
+                public void onEmit () {
+                    if (!departed.getAndSet(true)) playerDeparted(watch);
+                }
+            }));
+            if (!player.isConnected() && !departed.getAndSet(true)) playerDeparted(watch);
+        }
+
+        invoke(mgr, new Action<GameManager>() {
+            public void invoke (GameManager mgr) {
+                startWatching(watch);
+            }
+        });
+    }
+
+    // from interface GameReaperMBean
+    public int getLiveGames () {
+        return _games.size();
+    }
+
+    // from interface GameReaperMBean
+    public long getEstimatedRetainedBytes () {
+        long bytes = 0;
+        for (Watch watch : _games.values()) bytes += watch.mgr.estimateRetainedBytes();
+        return bytes;
+    }
+
+    /** Notes that one of the watched game's real players has left, reaping the game if they
+     * were the last. This may be called from any thread. */
+    protected void playerDeparted (final Watch watch) {
+        invoke(watch.mgr, new Action<GameManager>() {
+            public void invoke (GameManager mgr) {
+                if (--watch.connected == 0) reap(watch, "abandoned");
+            }
+        });
+    }
+
+    /** Listens for the end of the watched game. Called from the game's execution context. */
+    protected void startWatching (final Watch watch) {
+        final GameManager mgr = watch.mgr;
+
+        // once the game is over, give the players a while to look it over
+        watch.conns.add(mgr.gameObject().state.connect(new Slot<GameObject.State>() {
+            public void onEmit (GameObject.State state) {
+                if (state != GameObject.State.GAME_OVER || watch.grace != null) return;
+                watch.grace = _timer.schedule(FINISHED_GRACE_MILLIS, new Runnable() {
+                    public void run () {
+                        invoke(mgr, new Action<GameManager>() {
+                            public void invoke (GameManager mgr) {
+                                reap(watch, "finished");
+                            }
+                        });
+                    }
+                });
+            }
+        }));
+    }
+
+    /** Shuts down the game being watched, if it hasn't already been. Must be called from the
+     * game's execution context. */
+    protected void reap (Watch watch, String why) {
+        if (_games.remove(watch.mgr.getKey()) == null) return;
+        for (Connection conn : watch.conns) conn.disconnect();
+        if (watch.grace != null) watch.grace.cancel();
+        watch.mgr.shutdown();
+        log.info("Reaped game", "game", watch.mgr.getKey(), "why", why, "live", getLiveGames(),
+                 "estRetained", getEstimatedRetainedBytes());
+    }
+
+    protected void invoke (GameManager mgr, Action<GameManager> action) {
+        _nexus.invoke(GameManager.class, mgr.getKey(), action);
+    }
+
+    /** Tracks a live game. Other than {@link #mgr} and {@link #conns}, accessed only in the game's
+     * context. */
+    protected static class Watch {
+        public final GameManager mgr;
+
+        /** Our listeners, which are connected from the thread that called {@link #watch}. */
+        public final List<Connection> conns = new CopyOnWriteArrayList<Connection>();
+
+        /** The number of real players who have not yet left. */
+        public int connected;
+
+        /** The timeout that reaps the game once it's over, or null. */
+        public TurnTimer.Timeout grace;
+
+        public Watch (GameManager mgr, int connected) {
+            this.mgr = mgr;
+            this.connected = connected;
+        }
+    }
+
+    protected final Nexus _nexus;
+    protected final TurnTimer _timer;
+
+    /** The live games, by game id. */
+    protected final ConcurrentMap<Comparable<?>,Watch> _games = Maps.newConcurrentMap();
+
+    /** How long a finished game is retained so that its players can review the final scores. */
+    protected static final long FINISHED_GRACE_MILLIS = 5*60*1000L;
+}
@@ -0,0 +1,19 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+/**
+ * The metrics that a {@link GameReaper} exports via JMX.
+ */
+public interface GameReaperMBean
+{
+    /** Returns the number of games that have been created and not yet shut down. */
+    int getLiveGames ();
+
+    /** Returns an estimate of the memory retained by the live games, in bytes. This is derived
+     * from the number of plays in each game (see {@link GameManager#estimateRetainedBytes}), not
+     * measured. */
+    long getEstimatedRetainedBytes ();
+}
@@ -0,0 +1,193 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import static atlantis.shared.Log.log;
+
+/**
+ * Wraps an executor service, measuring how long tasks wait to start and how long they run, and
+ * how many are waiting. These metrics are available via JMX once {@link #export}ed.
+ *
+ * <p>Executors are created for one of the following execution models (see {@link #create}):</p>
+ * <ul>
+ * <li>{@code workstealing}: a fork-join pool in FIFO mode, with a thread per core by default.
+ * Idle threads steal queued tasks from busy ones.</li>
+ * <li>{@code fixed}: a fixed size pool sharing a single queue.</li>
+ * <li>{@code virtual}: a new virtual thread for every task, which requires a JVM that supports
+ * them (Java 21 or newer). The thread count is ignored.</li>
+ * </ul>
+ */
+public class InstrumentedExecutor extends AbstractExecutorService
+    implements InstrumentedExecutorMBean
+{
+    /**
+     * Creates an instrumented executor with the specified execution model.
+     *
+     * @param threads the number of threads for pooled models, or 0 for one per core.
+     * @throws IllegalArgumentException if the model is unknown or not supported by this JVM.
+     */
+    public static InstrumentedExecutor create (String model, int threads) {
+        if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+        if ("workstealing".equals(model)) {
+            return new InstrumentedExecutor(model, new ForkJoinPool(
+                threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true));
+        } else if ("fixed".equals(model)) {
+            return new InstrumentedExecutor(model, Executors.newFixedThreadPool(threads));
+        } else if ("virtual".equals(model)) {
+            // looked up reflectively so that we still build and run on JVMs that predate them
+            try {
+                return new InstrumentedExecutor(model, (ExecutorService)Executors.class.
+                    getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+            } catch (Exception e) {
+                throw new IllegalArgumentException(
+                    "Virtual threads are not supported by this JVM", e);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown execution model: " + model);
+        }
+    }
+
+    public InstrumentedExecutor (String model, ExecutorService delegate) {
+        _model = model;
+        _delegate = delegate;
+    }
+
+    /**
+     * Registers this executor's metrics with the platform MBean server under the specified name
+     * (e.g. {@code atlantis:type=Executor,name=nexus}). Failure is logged, but is not fatal.
+     */
+    public void export (String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        } catch (Exception e) {
+            log.warning("Failed to export executor metrics", "name", name, e);
+        }
+    }
+
+    // from interface Executor
+    public void execute (final Runnable task) {
+        final long queued = System.nanoTime();
+        _queued.incrementAndGet();
+        _delegate.execute(new Runnable() {
+            public void run () {
+                long started = System.nanoTime();
+                _queued.decrementAndGet();
+                _active.incrementAndGet();
+                _queueStats.record(started - queued);
+                try {
+                    task.run();
+                } finally {
+                    _runStats.record(System.nanoTime() - started);
+                    _active.decrementAndGet();
+                    _completed.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    // from interface ExecutorService
+    public void shutdown () {
+        _delegate.shutdown();
+    }
+
+    // from interface ExecutorService
+    public List<Runnable> shutdownNow () {
+        return _delegate.shutdownNow();
+    }
+
+    // from interface ExecutorService
+    public boolean isShutdown () {
+        return _delegate.isShutdown();
+    }
+
+    // from interface ExecutorService
+    public boolean isTerminated () {
+        return _delegate.isTerminated();
+    }
+
+    // from interface ExecutorService
+    public boolean awaitTermination (long timeout, TimeUnit unit) throws InterruptedException {
+        return _delegate.awaitTermination(timeout, unit);
+    }
+
+    // from interface InstrumentedExecutorMBean
+    public String getModel () {
+        return _model;
+    }
+
+    // from interface InstrumentedExecutorMBean
+    public int getQueueDepth () {
+        return _queued.get();
+    }
+
+    // from interface InstrumentedExecutorMBean
+    public int getActiveTasks () {
+        return _active.get();
+    }
+
+    // from interface InstrumentedExecutorMBean
+    public long getCompletedTasks () {
+        return _completed.get();
+    }
+
+    // from interface InstrumentedExecutorMBean
+    public double getMeanQueueMillis () {
+        return _queueStats.meanMillis();
+    }
+
+    // from interface InstrumentedExecutorMBean
+    public double getP99QueueMillis () {
+        return _queueStats.percentileMillis(99);
+    }
+
+    // from interface InstrumentedExecutorMBean
+    public double getMaxQueueMillis () {
+        return _queueStats.maxMillis();
+    }
+
+    // from interface InstrumentedExecutorMBean
+    public double getMeanRunMillis () {
+        return _runStats.meanMillis();
+    }
+
+    // from interface InstrumentedExecutorMBean
+    public double getP99RunMillis () {
+        return _runStats.percentileMillis(99);
+    }
+
+    // from interface InstrumentedExecutorMBean
+    public double getMaxRunMillis () {
+        return _runStats.maxMillis();
+    }
+
+    @Override
+    public String toString () {
+        return _model + " [queued=" + _queued + ", active=" + _active + ", wait=" + _queueStats +
+            ", run=" + _runStats + "]";
+    }
+
+    protected final String _model;
+    protected final ExecutorService _delegate;
+
+    /** The number of tasks waiting to start, and running. */
+    protected final AtomicInteger _queued = new AtomicInteger(), _active = new AtomicInteger();
+    protected final AtomicLong _completed = new AtomicLong();
+
+    /** The time tasks spend waiting to start, and running. */
+    protected final LatencyStats _queueStats = new LatencyStats();
+    protected final LatencyStats _runStats = new LatencyStats();
+}
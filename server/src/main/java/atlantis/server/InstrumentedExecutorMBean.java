@@ -0,0 +1,31 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+/**
+ * The metrics that an {@link InstrumentedExecutor} exports via JMX. Times are in milliseconds.
+ */
+public interface InstrumentedExecutorMBean
+{
+    /** Returns the name of the execution model in use. */
+    String getModel ();
+
+    /** Returns the number of tasks that have been submitted but have not yet started. */
+    int getQueueDepth ();
+
+    /** Returns the number of tasks that are currently running. */
+    int getActiveTasks ();
+
+    /** Returns the number of tasks that have completed. */
+    long getCompletedTasks ();
+
+    double getMeanQueueMillis ();
+    double getP99QueueMillis ();
+    double getMaxQueueMillis ();
+
+    double getMeanRunMillis ();
+    double getP99RunMillis ();
+    double getMaxRunMillis ();
+}
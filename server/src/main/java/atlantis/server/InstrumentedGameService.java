@@ -0,0 +1,50 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import atlantis.shared.GameService;
+import atlantis.shared.Piecen;
+import atlantis.shared.Placement;
+
+/**
+ * Wraps a game service implementation, recording {@link DispatchStats} for each of its methods.
+ * The generated dispatcher is created for this wrapper rather than the implementation itself.
+ */
+public class InstrumentedGameService implements GameService
+{
+    public InstrumentedGameService (GameService delegate) {
+        _delegate = delegate;
+    }
+
+    // from interface GameService
+    public void playerReady (int playerIdx) {
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            _delegate.playerReady(playerIdx);
+            failed = false;
+        } finally {
+            PLAYER_READY.record(started, failed);
+        }
+    }
+
+    // from interface GameService
+    public void play (int playerIdx, Placement play, Piecen piecen) {
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            _delegate.play(playerIdx, play, piecen);
+            failed = false;
+        } finally {
+            PLAY.record(started, failed);
+        }
+    }
+
+    protected final GameService _delegate;
+
+    protected static final DispatchStats.Method PLAYER_READY =
+        DispatchStats.register("GameService.playerReady");
+    protected static final DispatchStats.Method PLAY = DispatchStats.register("GameService.play");
+}
@@ -0,0 +1,51 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import com.threerings.nexus.util.Callback;
+
+import atlantis.shared.MatchService;
+
+/**
+ * Wraps a match service implementation, recording {@link DispatchStats} for each of its methods.
+ * The generated dispatcher is created for this wrapper rather than the implementation itself.
+ */
+public class InstrumentedMatchService implements MatchService
+{
+    public InstrumentedMatchService (MatchService delegate) {
+        _delegate = delegate;
+    }
+
+    // from interface MatchService
+    public void matchMe (Callback<GameInfo> callback) {
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            _delegate.matchMe(callback);
+            failed = false;
+        } finally {
+            MATCH_ME.record(started, failed);
+        }
+    }
+
+    // from interface MatchService
+    public void nevermind () {
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            _delegate.nevermind();
+            failed = false;
+        } finally {
+            NEVERMIND.record(started, failed);
+        }
+    }
+
+    protected final MatchService _delegate;
+
+    protected static final DispatchStats.Method MATCH_ME =
+        DispatchStats.register("MatchService.matchMe");
+    protected static final DispatchStats.Method NEVERMIND =
+        DispatchStats.register("MatchService.nevermind");
+}
@@ -0,0 +1,96 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Accumulates a histogram of latencies, which may be recorded from any number of threads without
+ * locking or allocation. As in an HdrHistogram, latencies are counted in log-linear buckets: each
+ * power of two nanoseconds is split into {@link #SUB_BUCKETS} equal buckets, so percentiles are
+ * reported to within 12.5%, in constant space.
+ */
+public class LatencyStats
+{
+    /**
+     * Records a single latency.
+     */
+    public void record (long nanos) {
+        nanos = Math.max(nanos, 0);
+        _buckets.incrementAndGet(bucket(nanos));
+        _count.incrementAndGet();
+        _total.addAndGet(nanos);
+        long max = _max.get();
+        while (nanos > max && !_max.compareAndSet(max, nanos)) max = _max.get();
+    }
+
+    /** Returns the number of latencies recorded. */
+    public long count () {
+        return _count.get();
+    }
+
+    /** Returns the mean of the recorded latencies, in milliseconds. */
+    public double meanMillis () {
+        long count = _count.get();
+        return (count == 0) ? 0 : _total.get() / (double)count / NANOS_PER_MILLI;
+    }
+
+    /** Returns the largest recorded latency, in milliseconds. */
+    public double maxMillis () {
+        return _max.get() / (double)NANOS_PER_MILLI;
+    }
+
+    /**
+     * Returns (an upper bound on) the specified percentile of the recorded latencies, in
+     * milliseconds.
+     *
+     * @param percentile the percentile, from 0 to 100.
+     */
+    public double percentileMillis (double percentile) {
+        long counted = 0, count = 0;
+        for (int ii = 0; ii < _buckets.length(); ii++) count += _buckets.get(ii);
+        long target = (long)Math.ceil(count * percentile / 100);
+        for (int ii = 0; ii < _buckets.length(); ii++) {
+            counted += _buckets.get(ii);
+            if (counted >= target && counted > 0) {
+                return Math.min(bucketMax(ii), _max.get()) / (double)NANOS_PER_MILLI;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString () {
+        return String.format("n=%d mean=%.2fms p50=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+                             count(), meanMillis(), percentileMillis(50), percentileMillis(99),
+                             percentileMillis(99.9), maxMillis());
+    }
+
+    /** Returns the index of the bucket that counts the supplied (non-negative) latency. */
+    protected static int bucket (long nanos) {
+        if (nanos < SUB_BUCKETS) return (int)nanos;
+        // the bits below the top SUB_BITS+1 bits are dropped
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int)(nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    /** Returns the largest latency counted by the specified bucket. */
+    protected static long bucketMax (int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return ((long)(bucket % SUB_BUCKETS + SUB_BUCKETS + 1) << shift) - 1;
+    }
+
+    /** The number of latencies recorded in each bucket. */
+    protected final AtomicLongArray _buckets = new AtomicLongArray(bucket(Long.MAX_VALUE) + 1);
+    protected final AtomicLong _count = new AtomicLong(), _total = new AtomicLong();
+    protected final AtomicLong _max = new AtomicLong();
+
+    /** Each power of two is split into 2^SUB_BITS buckets. */
+    protected static final int SUB_BITS = 3, SUB_BUCKETS = 1 << SUB_BITS;
+
+    protected static final long NANOS_PER_MILLI = 1000000L;
+}
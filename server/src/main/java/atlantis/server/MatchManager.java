@@ -6,8 +6,11 @@ package atlantis.server;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import react.Connection;
 import react.UnitSlot;
@@ -21,88 +24,158 @@ import atlantis.shared.Factory_MatchService;
 import atlantis.shared.GameObject;
 import atlantis.shared.MatchObject;
 import atlantis.shared.MatchService;
+import atlantis.sim.TranspositionTable;
 
 /**
- * A super simple match maker that just matches people up as they come in.
+ * A super simple match maker that just matches people up as they come in. If a full game has not
+ * come together after a player has waited a while, a game is started as soon as there are at least
+ * two players waiting, and its empty seats are filled with bots.
+ *
+ * <p>Waiters are queued in arrival order and indexed by player, so joining and leaving the queue
+ * are constant time. Rather than polling, a single deferred action is scheduled for the moment
+ * the longest waiting player will have waited long enough, and rescheduled only when that player
+ * changes. An idle match manager thus does no work at all.</p>
  */
 public class MatchManager implements MatchService, Singleton
 {
-    public MatchManager (Nexus nexus)
+    /**
+     * Creates the match manager.
+     *
+     * @param botExec the executor on which bots search for their moves.
+     * @param botTable the table through which bots share their search statistics.
+     * @param turnTimer the timer that runs every game's turn clock.
+     * @param reaper shuts down the games we start once they are no longer needed.
+     */
+    public MatchManager (Nexus nexus, ExecutorService botExec, TranspositionTable botTable,
+                         TurnTimer turnTimer, GameReaper reaper)
     {
         _nexus = nexus;
+        _botExec = botExec;
+        _botTable = botTable;
+        _turnTimer = turnTimer;
+        _reaper = reaper;
 
         // register ourselves as a singleton
         nexus.registerSingleton(this);
 
         // create and register our chat object as a child singleton in our same context
-        MatchObject matchobj = new MatchObject(Factory_MatchService.createDispatcher(this));
+        MatchObject matchobj = new MatchObject(
+            Factory_MatchService.createDispatcher(new InstrumentedMatchService(this)));
         nexus.registerSingleton(matchobj, this);
-
-        _nexus.invokeAfter(MatchManager.class, 1000L, new Action<MatchManager>() {
-            public void invoke (MatchManager mmgr) {
-                mmgr.maybeStartGame();
-            }
-        }).repeatEvery(1000L);
     }
 
     @Override // from interface MatchService
     public void matchMe (Callback<MatchService.GameInfo> callback) {
-        Player player = Player.getPlayer();
+        addWaiter(Player.getPlayer(), callback);
+    }
+
+    @Override // from interface MatchService
+    public void nevermind () {
+        removeWaiter(_waiters.get(Player.getPlayer()));
+    }
+
+    /**
+     * Queues the supplied player to be matched into a game, and starts one if possible. If the
+     * player is already waiting, their new request replaces their old one, which is failed.
+     */
+    protected void addWaiter (Player player, Callback<MatchService.GameInfo> callback) {
+        Waiter old = _waiters.get(player);
+        if (old != null) {
+            removeWaiter(old);
+            old.callback.onFailure(new IllegalStateException("Superseded by a new match request"));
+        }
+
         final Waiter waiter = new Waiter(player, callback);
         // if the player disconnects, remove their waiter record
         waiter.onDisconnect = player.onDisconnect.connect(_nexus.routed(this, new UnitSlot() {
             public void onEmit () {
-                _waiters.remove(waiter);
+                removeWaiter(waiter);
             }
         }));
-        _waiters.add(waiter);
+        _waiters.put(player, waiter);
 
-        // if we have enough players for a full game, start it now
-        if (_waiters.size() == MAX_PLAYERS) startGame();
+        // if we have enough players for a full game, or the longest waiting player has already
+        // waited long enough and was just waiting for company, start it now
+        if (_waiters.size() == MAX_PLAYERS || (_deadlineWaiter != null && _deadline == null &&
+                                               _waiters.size() >= MIN_HUMANS)) startGame();
+        else scheduleDeadline();
     }
 
-    @Override // from interface MatchService
-    public void nevermind () {
-        Player player = Player.getPlayer();
-        // remove the requesting player from the list of waiters
-        for (Iterator<Waiter> iter = _waiters.iterator(); iter.hasNext(); ) {
-            if (iter.next().player == player) {
-                iter.remove();
-                break;
-            }
-        }
+    /**
+     * Removes the supplied waiter from the queue, if it is (still) queued.
+     */
+    protected void removeWaiter (Waiter waiter) {
+        if (waiter == null || _waiters.get(waiter.player) != waiter) return;
+        _waiters.remove(waiter.player);
+        waiter.onDisconnect.disconnect();
+        scheduleDeadline();
     }
 
-    protected void maybeStartGame () {
-        // make sure we have enough players to even start a game
-        if (_waiters.size() < 2) return;
+    /**
+     * Ensures that our deferred action is scheduled for the moment the longest waiting player will
+     * have waited {@link #MAX_WAIT}, or is canceled if no one is waiting.
+     */
+    protected void scheduleDeadline () {
+        Waiter oldest = _waiters.isEmpty() ? null : _waiters.values().iterator().next();
+        if (oldest == _deadlineWaiter) return;
+
+        if (_deadline != null) {
+            _deadline.cancel();
+            _deadline = null;
+        }
+        _deadlineWaiter = oldest;
+        if (oldest == null) return;
 
-        // if the longest waiting player has waited long enough, start a game
-        long longestWait = System.currentTimeMillis() - oldestWaitStart();
-        if (longestWait > MAX_WAIT) startGame();
+        long delay = Math.max(oldest.waitStart + MAX_WAIT - System.currentTimeMillis(), 0L);
+        _deadline = _nexus.invokeAfter(MatchManager.class, delay, new Action<MatchManager>() {
+            public void invoke (MatchManager mmgr) {
+                mmgr.deadlineExpired();
+            }
+        });
+    }
+
+    protected void deadlineExpired () {
+        _deadline = null;
+        // the longest waiting player has waited long enough, so start a game if they have company;
+        // otherwise leave them marked as overdue so that the next player to arrive starts one
+        if (_waiters.size() >= MIN_HUMANS) {
+            _deadlineWaiter = null;
+            startGame();
+        }
     }
 
     protected void startGame () {
-        List<Waiter> players = _waiters.subList(0, Math.min(MAX_PLAYERS, _waiters.size()));
-        String[] playerNames = new String[players.size()];
-        for (int ii = 0, ll = players.size(); ii < ll; ii++) {
-            playerNames[ii] = players.get(ii).player.name.get();
+        // the longest waiting players are at the head of the queue
+        Waiter[] players = new Waiter[Math.min(MAX_PLAYERS, _waiters.size())];
+        List<Player> humans = Lists.newArrayListWithCapacity(players.length);
+        Iterator<Waiter> iter = _waiters.values().iterator();
+        for (int ii = 0; ii < players.length; ii++) {
+            players[ii] = iter.next();
+            iter.remove();
+            players[ii].onDisconnect.disconnect();
+            humans.add(players[ii].player);
         }
-        // the game manager will register with the nexus and kick everything off
-        GameObject gobj = new GameManager(_nexus, ++_gameId, playerNames).gameObject();
-        for (int ii = 0; ii < playerNames.length; ii++) {
-            Waiter w = players.get(ii);
-            w.callback.onSuccess(new MatchService.GameInfo(gobj, ii));
+
+        String[] playerNames = new String[MAX_PLAYERS];
+        for (int ii = 0; ii < players.length; ii++) {
+            playerNames[ii] = players[ii].player.name.get();
         }
-        players.clear(); // removes players from _waiters
-    }
+        // fill any empty seats with bots
+        for (int ii = players.length; ii < MAX_PLAYERS; ii++) {
+            playerNames[ii] = "Bot " + (ii - players.length + 1);
+        }
+        // the game manager will register with the nexus and kick everything off
+        GameManager mgr = new GameManager(
+            _nexus, ++_gameId, playerNames, players.length, _botExec, _botTable, _turnTimer);
+        _reaper.watch(mgr, humans);
 
-    protected long oldestWaitStart () {
-        long oldestStart = _waiters.get(0).waitStart;
-        for (Waiter w : _waiters) {
-            oldestStart = Math.min(oldestStart, w.waitStart);
+        GameObject gobj = mgr.gameObject();
+        for (int ii = 0; ii < players.length; ii++) {
+            players[ii].callback.onSuccess(new MatchService.GameInfo(gobj, ii));
         }
-        return oldestStart;
+
+        // the remaining waiters (if any) have a new oldest member
+        scheduleDeadline();
     }
 
     protected static class Waiter {
@@ -118,11 +191,23 @@ public class MatchManager implements MatchService, Singleton
     }
 
     protected final Nexus _nexus;
-    protected final List<Waiter> _waiters = Lists.newArrayList();
+    protected final ExecutorService _botExec;
+    protected final TranspositionTable _botTable;
+    protected final TurnTimer _turnTimer;
+    protected final GameReaper _reaper;
+
+    /** The players waiting for a game, in the order in which they started waiting. */
+    protected final Map<Player,Waiter> _waiters = Maps.newLinkedHashMap();
+
+    /** The action that will start a game for {@link #_deadlineWaiter}, or null if that waiter's
+     * deadline has passed (or no one is waiting). */
+    protected Nexus.Deferred _deadline;
+    protected Waiter _deadlineWaiter;
 
     /** A monotonically increasing id given to each game manager. */
     protected int _gameId;
 
+    protected static final int MIN_HUMANS = 2;
     protected static final int MAX_PLAYERS = 4;
     protected static final long MAX_WAIT = 30*1000L;
 }
@@ -5,6 +5,7 @@
 package atlantis.server;
 
 import react.SignalView;
+import react.UnitSlot;
 import react.Value;
 
 import com.threerings.nexus.server.Session;
@@ -39,7 +40,21 @@ public class Player
     /** A signal that's emitted when this player disconnects from the server. */
     public final SignalView<Throwable> onDisconnect;
 
+    /**
+     * Returns true if this player has not yet disconnected. This may be called from any thread.
+     */
+    public boolean isConnected () {
+        return _connected;
+    }
+
     protected Player (SignalView<Throwable> onDisconnect) {
         this.onDisconnect = onDisconnect;
+        onDisconnect.connect(new UnitSlot() {
+            public void onEmit () {
+                _connected = false;
+            }
+        });
     }
+
+    protected volatile boolean _connected = true;
 }
@@ -7,8 +7,6 @@ package atlantis.server;
 import java.io.File;
 import java.io.IOException;
 import java.util.Properties;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import com.threerings.nexus.server.GWTConnectionManager;
 import com.threerings.nexus.server.JVMConnectionManager;
@@ -18,6 +16,9 @@ import com.threerings.nexus.server.NexusServer;
 import atlantis.client.Atlantis;
 import atlantis.shared.AtlantisSerializer;
 import atlantis.shared.Deployment;
+import atlantis.sim.TranspositionTable;
+
+import static atlantis.shared.Log.log;
 
 /**
  * Operates the chat server.
@@ -33,12 +34,40 @@ public class SimpleServer
         props.setProperty("nexus.rpc_timeout", "1000");
         NexusConfig config = new NexusConfig(props);
 
-        // create our server
-        ExecutorService exec = Executors.newFixedThreadPool(3);
+        // create our server, running its execution contexts with the configured execution model
+        // (see InstrumentedExecutor for the options)
+        InstrumentedExecutor exec = InstrumentedExecutor.create(
+            System.getProperty("atlantis.executor", EXECUTOR_MODEL),
+            Integer.getInteger("atlantis.executor_threads", 0));
+        exec.export("atlantis:type=Executor,name=nexus");
+        log.info("Created Nexus executor", "exec", exec);
         NexusServer server = new NexusServer(config, exec);
 
+        // create the fork-join pool on which bots search for moves; this is separate from the Nexus
+        // executor so that searching bots never hold up the game managers' execution contexts;
+        // bot searches never wait on one another (see MctsPolicy.start), so the pool never adds
+        // threads beyond its parallelism, which keeps bots to their share of the cores
+        int botThreads = Integer.getInteger(
+            "atlantis.bot_threads", Math.max(Runtime.getRuntime().availableProcessors() / 2, 1));
+        InstrumentedExecutor botPool = InstrumentedExecutor.create("workstealing", botThreads);
+        botPool.export("atlantis:type=Executor,name=bots");
+        // and the table through which all bots share their search statistics
+        long tableBytes = Long.getLong("atlantis.bot_table_mb", BOT_TABLE_MB) * 1024 * 1024;
+        TranspositionTable botTable = new TranspositionTable(tableBytes);
+
+        // create the timer that runs the turn clocks of all games
+        TurnTimer turnTimer = new TurnTimer(TURN_TIMER_TICK, TURN_TIMER_BUCKETS);
+        turnTimer.start();
+
+        // log service dispatch statistics now and then
+        DispatchStats.logPeriodically(turnTimer, DISPATCH_STATS_MILLIS);
+
+        // create the reaper that shuts down games once they're no longer needed
+        GameReaper reaper = new GameReaper(server, turnTimer);
+        reaper.export("atlantis:type=GameReaper");
+
         // create our singleton match manager
-        new MatchManager(server);
+        new MatchManager(server, botPool, botTable, turnTimer, reaper);
 
         // set up a direct socket connection manager
         final JVMConnectionManager jvmmgr = new JVMConnectionManager(server.getSessionManager());
@@ -53,4 +82,21 @@ public class SimpleServer
         gwtmgr.setDocRoot(new File("../html/target/atlantis-1.0-SNAPSHOT"));
         gwtmgr.start();
     }
+
+    /** The default execution model for the Nexus executor (overridden by the {@code
+     * atlantis.executor} system property). Its thread count defaults to the number of cores (and
+     * is overridden by {@code atlantis.executor_threads}). */
+    protected static final String EXECUTOR_MODEL = "workstealing";
+
+    /** The default memory cap for the bots' transposition table, in megabytes (overridden by the
+     * {@code atlantis.bot_table_mb} system property). */
+    protected static final long BOT_TABLE_MB = 64;
+
+    /** The resolution of turn clocks, and the number of ticks spanned by the timer's wheel (which
+     * should cover the turn length, so that each tick visits only timeouts that are due). */
+    protected static final long TURN_TIMER_TICK = 100L;
+    protected static final int TURN_TIMER_BUCKETS = 1024;
+
+    /** How often service dispatch statistics are logged. */
+    protected static final long DISPATCH_STATS_MILLIS = 5*60*1000L;
 }
@@ -0,0 +1,165 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import static atlantis.shared.Log.log;
+
+/**
+ * Runs timeouts (such as turn clocks) on a hashed timing wheel, so that any number of games can
+ * schedule and cancel their timeouts in constant time, and a single thread fires them all.
+ *
+ * <p>Time is divided into ticks, and the wheel into a power of two buckets. A timeout due in
+ * {@code n} ticks is linked into the bucket {@code n} ticks ahead of the current one, noting how
+ * many full turns of the wheel remain before it is due. Each tick, the timer thread visits a
+ * single bucket, firing the timeouts whose turns have run out. As a timeout may be scheduled at
+ * any point in the current tick, it waits for one more tick than its delay spans. Timeouts thus
+ * fire no earlier than requested (provided the timer thread keeps up), and less than two ticks
+ * late.</p>
+ *
+ * <p>Timeouts fire on the timer thread, so their actions should be brief: a game manager, for
+ * example, should just hop into its own execution context.</p>
+ */
+public class TurnTimer
+{
+    /** A scheduled timeout. */
+    public static class Timeout
+    {
+        /**
+         * Cancels this timeout, if it has not yet fired.
+         *
+         * @return true if the timeout was canceled, false if it had already fired or been
+         * canceled.
+         */
+        public boolean cancel () {
+            synchronized (_timer) {
+                if (_action == null) return false;
+                _timer.unlink(this);
+                _action = null;
+                return true;
+            }
+        }
+
+        protected Timeout (TurnTimer timer, Runnable action, long rounds) {
+            _timer = timer;
+            _action = action;
+            _rounds = rounds;
+        }
+
+        protected final TurnTimer _timer;
+        protected Runnable _action;
+        protected long _rounds;
+        protected int _bucket;
+        protected Timeout _prev, _next;
+    }
+
+    /**
+     * Creates a timer with the specified tick length and number of buckets. It does nothing until
+     * {@link #start}ed.
+     *
+     * @param buckets the size of the wheel, which will be rounded up to a power of two. Timeouts
+     * due within this many ticks are found without skipping past any others.
+     */
+    public TurnTimer (long tickMillis, int buckets) {
+        _tickMillis = tickMillis;
+        _buckets = new Timeout[Integer.highestOneBit(Math.max(buckets - 1, 1)) << 1];
+    }
+
+    /**
+     * Starts the thread that advances the wheel.
+     */
+    public void start () {
+        Thread thread = new Thread("TurnTimer") {
+            @Override public void run () {
+                long start = System.currentTimeMillis();
+                for (long tick = 1; !isInterrupted(); tick++) {
+                    long delay = start + tick * _tickMillis - System.currentTimeMillis();
+                    try {
+                        if (delay > 0) Thread.sleep(delay);
+                    } catch (InterruptedException ie) {
+                        break;
+                    }
+                    for (Runnable action : advance()) {
+                        try {
+                            action.run();
+                        } catch (Throwable t) {
+                            log.warning("Timeout action failed", "action", action, t);
+                        }
+                    }
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        _thread = thread;
+    }
+
+    /**
+     * Stops the thread that advances the wheel. Pending timeouts will not fire.
+     */
+    public void shutdown () {
+        if (_thread != null) _thread.interrupt();
+        _thread = null;
+    }
+
+    /**
+     * Schedules the supplied action to run on the timer thread once the specified delay has
+     * elapsed.
+     *
+     * @return a handle via which the timeout may be canceled.
+     */
+    public synchronized Timeout schedule (long delayMillis, Runnable action) {
+        // a timeout is due at the end of the tick in which its delay expires, counting from the
+        // end of the current (partially elapsed) tick
+        long ticks = (Math.max(delayMillis, 0) + _tickMillis - 1) / _tickMillis + 1;
+        Timeout timeout = new Timeout(this, action, (ticks - 1) / _buckets.length);
+        timeout._bucket = (int)((_tick + ticks) & (_buckets.length - 1));
+        timeout._next = _buckets[timeout._bucket];
+        if (timeout._next != null) timeout._next._prev = timeout;
+        _buckets[timeout._bucket] = timeout;
+        return timeout;
+    }
+
+    /**
+     * Advances the wheel by one tick and returns the actions of the timeouts that are now due,
+     * which the caller must run.
+     */
+    protected synchronized List<Runnable> advance () {
+        _tick++;
+        List<Runnable> due = Lists.newArrayList();
+        Timeout timeout = _buckets[(int)(_tick & (_buckets.length - 1))];
+        while (timeout != null) {
+            Timeout next = timeout._next;
+            if (timeout._rounds-- == 0) {
+                due.add(timeout._action);
+                unlink(timeout);
+                timeout._action = null;
+            }
+            timeout = next;
+        }
+        return due;
+    }
+
+    /** Removes the supplied timeout from its bucket. The caller must hold our monitor. */
+    protected void unlink (Timeout timeout) {
+        if (timeout._prev != null) timeout._prev._next = timeout._next;
+        else _buckets[timeout._bucket] = timeout._next;
+        if (timeout._next != null) timeout._next._prev = timeout._prev;
+        timeout._prev = timeout._next = null;
+    }
+
+    protected final long _tickMillis;
+
+    /** The head of the list of timeouts in each bucket of the wheel. */
+    protected final Timeout[] _buckets;
+
+    /** The number of ticks that have elapsed since the timer was started. */
+    protected long _tick;
+
+    protected Thread _thread;
+}
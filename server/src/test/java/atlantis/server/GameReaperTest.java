@@ -0,0 +1,73 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import java.util.Arrays;
+
+import react.Signal;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link GameReaper} class.
+ */
+public class GameReaperTest
+{
+    @Test public void testDepartedBeforeWatch () {
+        Signal<Throwable> left = Signal.create(), stayed = Signal.create();
+        Player early = new Player(left), late = new Player(stayed);
+        GameManager mgr = createGame();
+
+        // one player disconnects after being matched, but before the game is watched
+        left.emit(null);
+        _reaper.watch(mgr, Arrays.asList(early, late));
+        _nexus.runPending();
+        assertEquals(1, _reaper.getLiveGames());
+
+        // once the other player leaves too, the game is abandoned
+        stayed.emit(null);
+        _nexus.runPending();
+        assertEquals(0, _reaper.getLiveGames());
+        assertFalse(_nexus.isRegistered(mgr.getKey()));
+    }
+
+    @Test public void testDepartedWhileWatchStarts () {
+        Signal<Throwable> first = Signal.create(), second = Signal.create();
+        GameManager mgr = createGame();
+        _reaper.watch(mgr, Arrays.asList(new Player(first), new Player(second)));
+
+        // both players leave before the game's context has started watching it
+        first.emit(null);
+        second.emit(null);
+        first.emit(null); // a repeated signal does not count twice
+        _nexus.runPending();
+        assertEquals(0, _reaper.getLiveGames());
+        assertFalse(_nexus.isRegistered(mgr.getKey()));
+    }
+
+    @Test public void testOnePlayerRemains () {
+        Signal<Throwable> first = Signal.create(), second = Signal.create();
+        GameManager mgr = createGame();
+        _reaper.watch(mgr, Arrays.asList(new Player(first), new Player(second)));
+        _nexus.runPending();
+
+        first.emit(null);
+        first.emit(null);
+        _nexus.runPending();
+        assertEquals(1, _reaper.getLiveGames());
+        assertTrue(_nexus.isRegistered(mgr.getKey()));
+    }
+
+    protected GameManager createGame () {
+        return new GameManager(_nexus.nexus, ++_gameId, new String[] { "one", "two" }, 2,
+                               null, null, _timer);
+    }
+
+    protected final TestNexus _nexus = new TestNexus();
+    protected final TurnTimer _timer = new TurnTimer(100L, 8);
+    protected final GameReaper _reaper = new GameReaper(_nexus.nexus, _timer);
+    protected int _gameId;
+}
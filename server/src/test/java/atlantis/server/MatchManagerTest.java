@@ -0,0 +1,64 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import react.Signal;
+
+import com.threerings.nexus.util.Callback;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import atlantis.shared.MatchService;
+
+/**
+ * Tests the {@link MatchManager} class.
+ */
+public class MatchManagerTest
+{
+    @Test public void testRepeatedRequest () {
+        Player player = new Player(Signal.<Throwable>create());
+        Recorder first = new Recorder(), second = new Recorder();
+        _mmgr.addWaiter(player, first);
+        _mmgr.addWaiter(player, second);
+
+        // the first request is failed rather than left hanging, and the second replaces it
+        assertNotNull(first.failure);
+        assertNull(second.failure);
+        assertEquals(1, _mmgr._waiters.size());
+        assertSame(second, _mmgr._waiters.get(player).callback);
+    }
+
+    @Test public void testDisconnect () {
+        Signal<Throwable> onDisconnect = Signal.create();
+        Recorder callback = new Recorder();
+        _mmgr.addWaiter(new Player(onDisconnect), callback);
+        assertEquals(1, _mmgr._waiters.size());
+
+        onDisconnect.emit(null);
+        assertEquals(0, _mmgr._waiters.size());
+        assertNull(callback.failure);
+    }
+
+    /** Records the outcome of a match request. */
+    protected static class Recorder implements Callback<MatchService.GameInfo>
+    {
+        public MatchService.GameInfo info;
+        public Throwable failure;
+
+        public void onSuccess (MatchService.GameInfo info) {
+            this.info = info;
+        }
+
+        public void onFailure (Throwable cause) {
+            failure = cause;
+        }
+    }
+
+    protected final TestNexus _nexus = new TestNexus();
+    protected final TurnTimer _timer = new TurnTimer(100L, 8);
+    protected final MatchManager _mmgr = new MatchManager(
+        _nexus.nexus, null, null, _timer, new GameReaper(_nexus.nexus, _timer));
+}
@@ -0,0 +1,88 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.threerings.nexus.distrib.Action;
+import com.threerings.nexus.distrib.Keyed;
+import com.threerings.nexus.distrib.Nexus;
+
+/**
+ * A stand-in for the Nexus that runs everything on the test's thread. Actions invoked on keyed
+ * entities are queued until the test calls {@link #runPending}, so that tests can control when
+ * execution contexts get their turn. Routed slots are called directly, and deferred actions are
+ * never run.
+ */
+public class TestNexus implements InvocationHandler
+{
+    /** The Nexus view of this stand-in. */
+    public final Nexus nexus = (Nexus)Proxy.newProxyInstance(
+        Nexus.class.getClassLoader(), new Class<?>[] { Nexus.class }, this);
+
+    /** Returns true if a keyed entity with the specified key is registered. */
+    public boolean isRegistered (Comparable<?> key) {
+        return _keyed.containsKey(key);
+    }
+
+    /**
+     * Runs the actions invoked so far (and any that they invoke in turn). Actions on entities that
+     * have since been cleared are dropped, as they are by the Nexus.
+     */
+    public void runPending () {
+        while (!_pending.isEmpty()) _pending.remove(0).run();
+    }
+
+    // from interface InvocationHandler
+    public Object invoke (Object proxy, Method method, final Object[] args) {
+        String name = method.getName();
+        if (name.equals("registerKeyed")) {
+            Keyed keyed = (Keyed)args[0];
+            _keyed.put(keyed.getKey(), keyed);
+        } else if (name.equals("clearKeyed")) {
+            _keyed.remove(((Keyed)args[0]).getKey());
+        } else if (name.equals("invoke") && args.length == 3) {
+            _pending.add(new Runnable() {
+                public void run () {
+                    @SuppressWarnings("unchecked") Action<Object> action = (Action<Object>)args[2];
+                    Keyed keyed = _keyed.get(args[1]);
+                    if (keyed != null) action.invoke(keyed);
+                }
+            });
+        } else if (name.equals("routed")) {
+            return args[1];
+        } else if (name.equals("invokeAfter")) {
+            return noop(method.getReturnType());
+        } else if (name.equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        } else if (name.equals("equals")) {
+            return proxy == args[0];
+        } else if (name.equals("toString")) {
+            return "TestNexus";
+        }
+        return null;
+    }
+
+    /** Creates an implementation of the supplied interface whose methods do nothing. */
+    protected static Object noop (Class<?> iface) {
+        return Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] { iface },
+                                      new InvocationHandler() {
+            public Object invoke (Object proxy, Method method, Object[] args) {
+                // allow chained calls like repeatEvery
+                return method.getReturnType().isInstance(proxy) ? proxy : null;
+            }
+        });
+    }
+
+    protected final Map<Object,Keyed> _keyed = Maps.newHashMap();
+    protected final List<Runnable> _pending = Lists.newArrayList();
+}
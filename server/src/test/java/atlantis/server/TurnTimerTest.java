@@ -0,0 +1,56 @@
+//
+// Atlantis - tile laying fun for the whole family!
+// https://github.com/threerings/atlantis
+
+package atlantis.server;
+
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link TurnTimer} class.
+ */
+public class TurnTimerTest
+{
+    @Test public void testMinimumDelay () {
+        // a timeout may be scheduled just before the current tick ends, so only the ticks after
+        // the first count toward its delay; delays beyond the wheel's span take extra rounds
+        long[] delays = { 0, 1, 99, 100, 101, 250, 799, 800, 801, 2500 };
+        for (long delay : delays) {
+            TurnTimer timer = new TurnTimer(TICK, 8);
+            timer.advance(); // schedule part way through the timer's life
+            timer.schedule(delay, NOOP);
+            int ticks = advanceUntilFired(timer);
+            assertTrue("Fired early: " + delay, (ticks - 1) * TICK >= delay);
+            assertTrue("Fired late: " + delay, (ticks - 1) * TICK < delay + TICK);
+        }
+    }
+
+    @Test public void testCancel () {
+        TurnTimer timer = new TurnTimer(TICK, 8);
+        TurnTimer.Timeout timeout = timer.schedule(TICK, NOOP);
+        TurnTimer.Timeout other = timer.schedule(TICK, NOOP);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertEquals(1, timer.advance().size() + timer.advance().size());
+        assertFalse(other.cancel()); // it has fired
+    }
+
+    /** Advances the supplied timer until a timeout fires, and returns the number of ticks. */
+    protected static int advanceUntilFired (TurnTimer timer) {
+        for (int ticks = 1; ticks < 1000; ticks++) {
+            List<Runnable> due = timer.advance();
+            if (!due.isEmpty()) return ticks;
+        }
+        fail("Timeout never fired");
+        return -1;
+    }
+
+    protected static final long TICK = 100L;
+
+    protected static final Runnable NOOP = new Runnable() {
+        public void run () {}
+    };
+}